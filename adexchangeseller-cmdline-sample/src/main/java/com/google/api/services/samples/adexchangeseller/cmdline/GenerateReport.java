@@ -23,7 +23,6 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
 /**
  * This example retrieves a report, using a filter for a specified ad client.
@@ -74,19 +73,14 @@ public class GenerateReport {
     Report response = request.execute();
 
     if (response.getRows() != null && !response.getRows().isEmpty()) {
-      // Display headers.
-      for (Report.Headers header : response.getHeaders()) {
-        System.out.printf("%25s", header.getName());
+      // Display headers and results.
+      ReportSink sink = ReportSinks.newConsoleSink();
+      try {
+        ReportSinks.writeHeaders(sink, response.getHeaders());
+        sink.writeRows(response.getRows());
+      } finally {
+        sink.close();
       }
-      System.out.println();
-
-      // Display results.
-      for (List<String> row : response.getRows()) {
-        for (String column : row) {
-          System.out.printf("%25s", column);
-        }
-        System.out.println();
-        }
 
       System.out.println();
     } else {
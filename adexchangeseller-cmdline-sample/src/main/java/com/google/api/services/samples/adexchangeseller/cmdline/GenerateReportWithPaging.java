@@ -23,7 +23,6 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
 /**
  * This example retrieves a report for the specified ad client.
@@ -45,7 +44,7 @@ public class GenerateReportWithPaging {
   static final DateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd");
 
   /**
-   * Runs this sample.
+   * Runs this sample, printing the report to the console.
    *
    * @param adExchangeSeller AdExchangeSeller service object on which to run the requests.
    * @param adClientId the ad client ID on which to run the report.
@@ -54,6 +53,20 @@ public class GenerateReportWithPaging {
    */
   public static void run(AdExchangeSeller adExchangeSeller, String adClientId,
       long maxReportPageSize) throws Exception {
+    run(adExchangeSeller, adClientId, maxReportPageSize, ReportSinks.newConsoleSink());
+  }
+
+  /**
+   * Runs this sample.
+   *
+   * @param adExchangeSeller AdExchangeSeller service object on which to run the requests.
+   * @param adClientId the ad client ID on which to run the report.
+   * @param maxReportPageSize the maximum size page to retrieve.
+   * @param sink sink to write the report to, one page at a time, which is closed at the end.
+   * @throws Exception
+   */
+  public static void run(AdExchangeSeller adExchangeSeller, String adClientId,
+      long maxReportPageSize, ReportSink sink) throws Exception {
     System.out.println("=================================================================");
     System.out.printf("Running report for ad client %s\n", adClientId);
     System.out.println("=================================================================");
@@ -79,71 +92,50 @@ public class GenerateReportWithPaging {
     // Sort by ascending date.
     request.setSort(Arrays.asList("+DATE"));
 
-    // Run first page of report.
-    request.setMaxResults(maxReportPageSize);
-    Report response = request.execute();
+    try {
+      // Run first page of report.
+      request.setMaxResults(maxReportPageSize);
+      Report response = request.execute();
 
-    if (response.getRows() == null || response.getRows().isEmpty()) {
-      System.out.println("No rows returned.");
-      return;
-    }
+      // The first page, so write headers, which file sinks write even for an empty report.
+      ReportSinks.writeHeaders(sink, response.getHeaders());
+
+      if (response.getRows() == null || response.getRows().isEmpty()) {
+        System.out.println("No rows returned.");
+        return;
+      }
 
-    // The first page, so display headers.
-    displayHeaders(response.getHeaders());
+      // Write first page results.
+      sink.writeRows(response.getRows());
 
-    // Display first page results.
-    displayRows(response.getRows());
+      int totalRows = Math.min(response.getTotalMatchedRows().intValue(), ROW_LIMIT);
+      for (long startIndex = response.getRows().size(); startIndex < totalRows;
+          startIndex += response.getRows().size()) {
 
-    int totalRows = Math.min(response.getTotalMatchedRows().intValue(), ROW_LIMIT);
-    for (long startIndex = response.getRows().size(); startIndex < totalRows;
-        startIndex += response.getRows().size()) {
+        // Check to see if we're going to go above the limit and get as many results as we can.
+        long pageSize = Math.min(maxReportPageSize, totalRows - startIndex);
 
-      // Check to see if we're going to go above the limit and get as many results as we can.
-      long pageSize = Math.min(maxReportPageSize, totalRows - startIndex);
+        request.setStartIndex(startIndex);
+        request.setMaxResults(pageSize);
 
-      request.setStartIndex(startIndex);
-      request.setMaxResults(pageSize);
+        // Run next page of report.
+        response = request.execute();
 
-      // Run next page of report.
-      response = request.execute();
+        // If the report size changes in between paged requests, the result may be empty.
+        if (response.getRows() == null || response.getRows().isEmpty()) {
+          break;
+        }
 
-      // If the report size changes in between paged requests, the result may be empty.
-      if (response.getRows() == null || response.getRows().isEmpty()) {
-        break;
+        // Write results.
+        sink.writeRows(response.getRows());
       }
-
-      // Display results.
-      displayRows(response.getRows());
+    } finally {
+      sink.close();
     }
 
     System.out.println();
   }
 
-  /**
-   * Displays the headers for the report.
-   * @param headers The list of headers to be displayed.
-   */
-  private static void displayHeaders(List<Report.Headers> headers) {
-    for (Report.Headers header : headers) {
-      System.out.printf("%25s", header.getName());
-    }
-    System.out.println();
-  }
-
-  /**
-   * Displays a list of rows for the report.
-   * @param rows The list of rows to display.
-   */
-  public static void displayRows(List<List<String>> rows) {
-    // Display results.
-    for (List<String> row : rows) {
-      for (String column : row) {
-        System.out.printf("%25s", column);
-      }
-      System.out.println();
-    }
-  }
-
   /**
    * Escape special characters for a parameter being used in a filter.
    * @param parameter the parameter to be escaped.
@@ -45,29 +45,20 @@ public class GetAllAdUnits {
     System.out.println("=================================================================");
 
     // Retrieve ad unit list in pages and display data as we receive it.
-    String pageToken = null;
-    AdUnits adUnits = null;
-    do {
-      adUnits = adExchangeSeller.adunits().list(adClientId)
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (adUnits.getItems() != null && !adUnits.getItems().isEmpty()) {
-        for (AdUnit unit : adUnits.getItems()) {
-          System.out.printf("Ad unit with code \"%s\", name \"%s\" and status \"%s\" was found.\n",
-              unit.getCode(), unit.getName(), unit.getStatus());
-        }
-      } else {
-        System.out.println("No ad units found.");
-      }
-
-      pageToken = adUnits.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<AdUnits, AdUnit> adUnits = new PagedFetcher<AdUnits, AdUnit>(
+        adExchangeSeller.adunits().list(adClientId).setMaxResults(maxPageSize));
+    while (adUnits.hasNext()) {
+      AdUnit unit = adUnits.next();
+      System.out.printf("Ad unit with code \"%s\", name \"%s\" and status \"%s\" was found.\n",
+          unit.getCode(), unit.getName(), unit.getStatus());
+    }
+    if (adUnits.getItemCount() == 0) {
+      System.out.println("No ad units found.");
+    }
 
     System.out.println();
 
     // Return the last page of ad units, so that the main sample has something to run.
-    return adUnits;
+    return adUnits.getLastPage();
   }
 }
@@ -45,25 +45,18 @@ public class GetAllCustomChannelsForAdUnit {
     System.out.println("=================================================================");
 
     // Retrieve custom channel list in pages and display the data as we receive it.
-    String pageToken = null;
-    do {
-      CustomChannels customChannels = adExchangeSeller.adunits().customchannels()
-          .list(adClientId, adUnitId)
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (customChannels.getItems() != null && !customChannels.getItems().isEmpty()) {
-        for (CustomChannel channel : customChannels.getItems()) {
-          System.out.printf("Custom channel with code \"%s\" and name \"%s\" was found.\n",
-              channel.getCode(), channel.getName());
-        }
-      } else {
-        System.out.println("No custom channels found.");
-      }
-
-      pageToken = customChannels.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<CustomChannels, CustomChannel> customChannels =
+        new PagedFetcher<CustomChannels, CustomChannel>(
+            adExchangeSeller.adunits().customchannels().list(adClientId, adUnitId)
+                .setMaxResults(maxPageSize));
+    while (customChannels.hasNext()) {
+      CustomChannel channel = customChannels.next();
+      System.out.printf("Custom channel with code \"%s\" and name \"%s\" was found.\n",
+          channel.getCode(), channel.getName());
+    }
+    if (customChannels.getItemCount() == 0) {
+      System.out.println("No custom channels found.");
+    }
 
     System.out.println();
   }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.adexchangeseller.cmdline;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.json.GenericJson;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Iterates over the items of all pages of a list request, such as
+ * {@code adExchangeSeller.adclients().list()}.
+ *
+ * <p>
+ * Pages are only requested once their items are needed, except that the next page is requested in
+ * the background as soon as a page is received, so that it is usually available by the time the
+ * items of the current page have been consumed. The page size is left to the request, which should
+ * ask for as many results per page as the method allows. The number of pages and items and the time
+ * spent fetching pages and waiting for them are kept.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe and can be iterated only once. The request must not be used
+ * elsewhere while it is being iterated.
+ * </p>
+ *
+ * @param <P> type of the pages, such as {@code AdUnits}
+ * @param <T> type of the items, such as {@code AdUnit}
+ */
+public class PagedFetcher<P extends GenericJson, T> {
+
+  /** Daemon threads fetching the next pages, so that an abandoned iteration does not block exit. */
+  private static final ExecutorService PREFETCH_EXECUTOR =
+      Executors.newCachedThreadPool(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "PagedFetcher");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  private final AbstractGoogleClientRequest<P> request;
+
+  /** Pending request of the next page or {@code null} after the last page. */
+  private Future<P> nextPage;
+
+  private Iterator<T> items = Collections.<T>emptyList().iterator();
+
+  private P lastPage;
+
+  private int pageCount;
+
+  private long itemCount;
+
+  private final AtomicLong fetchNanos = new AtomicLong();
+
+  private long waitNanos;
+
+  /**
+   * @param request list request of the first page, which is reused for the next pages by setting
+   *        its {@code pageToken}
+   */
+  public PagedFetcher(AbstractGoogleClientRequest<P> request) {
+    this.request = request;
+  }
+
+  /** Returns whether there is another item, fetching the next pages as needed. */
+  public boolean hasNext() throws IOException {
+    if (pageCount == 0 && nextPage == null) {
+      nextPage = fetch(null);
+    }
+    while (!items.hasNext()) {
+      if (nextPage == null) {
+        return false;
+      }
+      long start = System.nanoTime();
+      P page = getPage(nextPage);
+      waitNanos += System.nanoTime() - start;
+      pageCount++;
+      lastPage = page;
+      String pageToken = (String) page.get("nextPageToken");
+      nextPage = pageToken == null ? null : fetch(pageToken);
+      @SuppressWarnings("unchecked")
+      List<T> pageItems = (List<T>) page.get("items");
+      if (pageItems != null) {
+        items = pageItems.iterator();
+      }
+    }
+    return true;
+  }
+
+  /** Returns the next item, fetching the next pages as needed. */
+  public T next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    itemCount++;
+    return items.next();
+  }
+
+  /** Returns the last page received or {@code null} before the first one. */
+  public P getLastPage() {
+    return lastPage;
+  }
+
+  /** Returns the number of pages received. */
+  public int getPageCount() {
+    return pageCount;
+  }
+
+  /** Returns the number of items returned by {@link #next()}. */
+  public long getItemCount() {
+    return itemCount;
+  }
+
+  /** Returns the total time spent executing the requests of the pages, in milliseconds. */
+  public long getFetchMillis() {
+    return fetchNanos.get() / 1000000;
+  }
+
+  /** Returns the total time spent waiting for pages to be received, in milliseconds. */
+  public long getWaitMillis() {
+    return waitNanos / 1000000;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d items in %d pages, fetched in %d ms, waited for %d ms", itemCount,
+        pageCount, getFetchMillis(), getWaitMillis());
+  }
+
+  private Future<P> fetch(final String pageToken) {
+    return PREFETCH_EXECUTOR.submit(new Callable<P>() {
+
+      @Override
+      public P call() throws IOException {
+        long start = System.nanoTime();
+        request.set("pageToken", pageToken);
+        P page = request.execute();
+        fetchNanos.addAndGet(System.nanoTime() - start);
+        return page;
+      }
+    });
+  }
+
+  private static <P> P getPage(Future<P> page) throws IOException {
+    try {
+      return page.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while fetching a page");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
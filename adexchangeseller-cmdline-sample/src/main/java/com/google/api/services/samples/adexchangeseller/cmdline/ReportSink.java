@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.adexchangeseller.cmdline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the rows of a report, which receives the headers once and then the rows one page
+ * at a time, as they are received. Implementations are available from {@link ReportSinks}.
+ */
+public interface ReportSink extends Closeable {
+
+  /**
+   * Writes the headers of the report.
+   *
+   * @param names names of the columns
+   * @param types types of the columns, such as {@code "DIMENSION"} or {@code "METRIC_TALLY"}
+   */
+  void writeHeaders(List<String> names, List<String> types) throws IOException;
+
+  /** Writes a page of rows, each holding one value per column. */
+  void writeRows(List<List<String>> rows) throws IOException;
+
+  /** Writes any buffered rows and closes the underlying stream, unless it is the console. */
+  @Override
+  void close() throws IOException;
+}
@@ -83,7 +83,7 @@ public class AdSenseSample {
   private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 
   // Request parameters.
-  private static final int MAX_LIST_PAGE_SIZE = 50;
+  private static final int MAX_LIST_PAGE_SIZE = 10000; // largest accepted by the list methods
   private static final int MAX_REPORT_PAGE_SIZE = 50;
 
   /** Global instance of the HTTP transport. */
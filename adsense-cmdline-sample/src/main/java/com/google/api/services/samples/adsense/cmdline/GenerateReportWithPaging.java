@@ -16,21 +16,20 @@ package com.google.api.services.samples.adsense.cmdline;
 
 import com.google.api.services.adsense.AdSense;
 import com.google.api.services.adsense.AdSense.Reports.Generate;
-import com.google.api.services.adsense.model.AdsenseReportsGenerateResponse;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
 /**
  * This example retrieves a report for the specified ad client.
  *
  * Please only use pagination if your application requires it due to memory or storage constraints.
- * If you need to retrieve more than 5000 rows, please check GenerateReport.java, as due to current
- * limitations you will not be able to use paging for large reports.
+ * Pages are requested concurrently by {@link ReportFetcher}, which splits reports of more than 5000
+ * rows, that cannot be paged through, into shards of consecutive days.
  *
  * Tags: reports.generate
  *
@@ -39,13 +38,10 @@ import java.util.List;
  */
 public class GenerateReportWithPaging {
 
-  // Maximum number of obtainable rows for paged reports (API limit).
-  private static final int ROW_LIMIT = 5000;
-
   static final DateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd");
 
   /**
-   * Runs this sample.
+   * Runs this sample, printing the report to the console.
    *
    * @param adsense AdSense service object on which to run the requests.
    * @param adClientId the ad client ID on which to run the report.
@@ -54,6 +50,20 @@ public class GenerateReportWithPaging {
    */
   public static void run(AdSense adsense, String adClientId, int maxReportPageSize)
       throws Exception {
+    run(adsense, adClientId, maxReportPageSize, ReportSinks.newConsoleSink());
+  }
+
+  /**
+   * Runs this sample.
+   *
+   * @param adsense AdSense service object on which to run the requests.
+   * @param adClientId the ad client ID on which to run the report.
+   * @param maxReportPageSize the maximum size page to retrieve.
+   * @param sink sink to write the report to, which is closed at the end.
+   * @throws Exception
+   */
+  public static void run(final AdSense adsense, final String adClientId, int maxReportPageSize,
+      ReportSink sink) throws Exception {
     System.out.println("=================================================================");
     System.out.printf("Running report for ad client %s\n", adClientId);
     System.out.println("=================================================================");
@@ -67,83 +77,42 @@ public class GenerateReportWithPaging {
 
     String startDate = DATE_FORMATTER.format(oneWeekAgo);
     String endDate = DATE_FORMATTER.format(today);
-    Generate request = adsense.reports().generate(startDate, endDate);
+    ReportFetcher fetcher = new ReportFetcher(new ReportFetcher.RequestFactory() {
 
-    // Specify the desired ad client using a filter.
-    request.setFilter(Arrays.asList("AD_CLIENT_ID==" + escapeFilterParameter(adClientId)));
+      @Override
+      public Generate newRequest(String startDate, String endDate) throws IOException {
+        Generate request = adsense.reports().generate(startDate, endDate);
 
-    request.setMetric(Arrays.asList("PAGE_VIEWS", "AD_REQUESTS", "AD_REQUESTS_COVERAGE", "CLICKS",
-        "AD_REQUESTS_CTR", "COST_PER_CLICK", "AD_REQUESTS_RPM", "EARNINGS"));
-    request.setDimension(Arrays.asList("DATE"));
+        // Specify the desired ad client using a filter.
+        request.setFilter(Arrays.asList("AD_CLIENT_ID==" + escapeFilterParameter(adClientId)));
 
-    // Sort by ascending date.
-    request.setSort(Arrays.asList("+DATE"));
+        request.setMetric(Arrays.asList("PAGE_VIEWS", "AD_REQUESTS", "AD_REQUESTS_COVERAGE",
+            "CLICKS", "AD_REQUESTS_CTR", "COST_PER_CLICK", "AD_REQUESTS_RPM", "EARNINGS"));
+        request.setDimension(Arrays.asList("DATE"));
 
-    // Run first page of report.
-    request.setMaxResults(maxReportPageSize);
-    AdsenseReportsGenerateResponse response = request.execute();
+        // Sort by ascending date.
+        request.setSort(Arrays.asList("+DATE"));
+        return request;
+      }
+    }, maxReportPageSize, ReportFetcher.DEFAULT_CONCURRENCY);
+
+    // Run the report, requesting the pages after the first one concurrently, and write each page
+    // as soon as it is received.
+    long rowCount;
+    try {
+      rowCount = fetcher.fetch(startDate, endDate, sink);
+    } finally {
+      sink.close();
+    }
 
-    if (response.getRows() == null || response.getRows().isEmpty()) {
+    if (rowCount == 0) {
       System.out.println("No rows returned.");
       return;
     }
 
-    // The first page, so display headers.
-    displayHeaders(response.getHeaders());
-
-    // Display first page results.
-    displayRows(response.getRows());
-
-    int totalRows = Math.min(response.getTotalMatchedRows().intValue(), ROW_LIMIT);
-    for (int startIndex = response.getRows().size(); startIndex < totalRows;
-        startIndex += response.getRows().size()) {
-
-      // Check to see if we're going to go above the limit and get as many results as we can.
-      int pageSize = Math.min(maxReportPageSize, totalRows - startIndex);
-
-      request.setStartIndex(startIndex);
-      request.setMaxResults(pageSize);
-
-      // Run next page of report.
-      response = request.execute();
-
-      // If the report size changes in between paged requests, the result may be empty.
-      if (response.getRows() == null || response.getRows().isEmpty()) {
-        break;
-      }
-
-      // Display results.
-      displayRows(response.getRows());
-    }
-
-    System.out.println();
-  }
-
-  /**
-   * Displays the headers for the report.
-   * @param headers The list of headers to be displayed.
-   */
-  private static void displayHeaders(List<AdsenseReportsGenerateResponse.Headers> headers) {
-    for (AdsenseReportsGenerateResponse.Headers header : headers) {
-      System.out.printf("%25s", header.getName());
-    }
     System.out.println();
   }
 
-  /**
-   * Displays a list of rows for the report.
-   * @param rows The list of rows to display.
-   */
-  public static void displayRows(List<List<String>> rows) {
-    // Display results.
-    for (List<String> row : rows) {
-      for (String column : row) {
-        System.out.printf("%25s", column);
-      }
-      System.out.println();
-    }
-  }
-
   /**
    * Escape special characters for a parameter being used in a filter.
    * @param parameter the parameter to be escaped.
@@ -22,7 +22,6 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
 /**
  * This example retrieves a saved report for the default account.
@@ -59,18 +58,13 @@ public class GenerateSavedReport {
     AdsenseReportsGenerateResponse response = request.execute();
 
     if (response.getRows() != null && !response.getRows().isEmpty()) {
-      // Display headers.
-      for (AdsenseReportsGenerateResponse.Headers header : response.getHeaders()) {
-        System.out.printf("%25s", header.getName());
-      }
-      System.out.println();
-
-      // Display results.
-      for (List<String> row : response.getRows()) {
-        for (String column : row) {
-          System.out.printf("%25s", column);
-        }
-        System.out.println();
+      // Display headers and results.
+      ReportSink sink = ReportSinks.newConsoleSink();
+      try {
+        ReportSinks.writeHeaders(sink, response.getHeaders());
+        sink.writeRows(response.getRows());
+      } finally {
+        sink.close();
       }
 
       System.out.println();
@@ -43,27 +43,18 @@ public class GetAllAccounts {
     System.out.println("=================================================================");
 
     // Retrieve account list in pages and display data as we receive it.
-    String pageToken = null;
-    Accounts accounts = null;
-    do {
-      accounts = adsense.accounts().list()
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (accounts.getItems() != null && !accounts.getItems().isEmpty()) {
-        for (Account account : accounts.getItems()) {
-          System.out.printf("Account with ID \"%s\" and name \"%s\" was found.\n",
-              account.getId(), account.getName());
-        }
-      } else {
-        System.out.println("No accounts found.");
-      }
-
-      pageToken = accounts.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<Accounts, Account> accounts = new PagedFetcher<Accounts, Account>(
+        adsense.accounts().list().setMaxResults(maxPageSize));
+    while (accounts.hasNext()) {
+      Account account = accounts.next();
+      System.out.printf("Account with ID \"%s\" and name \"%s\" was found.\n",
+          account.getId(), account.getName());
+    }
+    if (accounts.getItemCount() == 0) {
+      System.out.println("No accounts found.");
+    }
 
     System.out.println();
-    return accounts;
+    return accounts.getLastPage();
   }
 }
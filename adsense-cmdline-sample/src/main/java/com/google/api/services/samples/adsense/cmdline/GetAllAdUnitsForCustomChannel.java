@@ -45,24 +45,17 @@ public class GetAllAdUnitsForCustomChannel {
     System.out.println("=================================================================");
 
     // Retrieve ad unit list in pages and display data as we receive it.
-    String pageToken = null;
-    do {
-      AdUnits adUnits = adsense.customchannels().adunits().list(adClientId, customChannelId)
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (adUnits.getItems() != null && !adUnits.getItems().isEmpty()) {
-        for (AdUnit unit : adUnits.getItems()) {
-          System.out.printf("Ad unit with code \"%s\", name \"%s\" and status \"%s\" was found.\n",
-              unit.getCode(), unit.getName(), unit.getStatus());
-        }
-      } else {
-        System.out.println("No ad units found.");
-      }
-
-      pageToken = adUnits.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<AdUnits, AdUnit> adUnits = new PagedFetcher<AdUnits, AdUnit>(
+        adsense.customchannels().adunits().list(adClientId, customChannelId)
+            .setMaxResults(maxPageSize));
+    while (adUnits.hasNext()) {
+      AdUnit unit = adUnits.next();
+      System.out.printf("Ad unit with code \"%s\", name \"%s\" and status \"%s\" was found.\n",
+          unit.getCode(), unit.getName(), unit.getStatus());
+    }
+    if (adUnits.getItemCount() == 0) {
+      System.out.println("No ad units found.");
+    }
 
     System.out.println();
   }
@@ -45,27 +45,19 @@ public class GetAllCustomChannels {
     System.out.println("=================================================================");
 
     // Retrieve custom channel list in pages and display the data as we receive it.
-    String pageToken = null;
-    CustomChannels customChannels = null;
-    do {
-      customChannels = adsense.customchannels().list(adClientId)
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (customChannels.getItems() != null && !customChannels.getItems().isEmpty()) {
-        for (CustomChannel channel : customChannels.getItems()) {
-          System.out.printf("Custom channel with code \"%s\" and name \"%s\" was found.\n",
-              channel.getCode(), channel.getName());
-        }
-      } else {
-        System.out.println("No custom channels found.");
-      }
-
-      pageToken = customChannels.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<CustomChannels, CustomChannel> customChannels =
+        new PagedFetcher<CustomChannels, CustomChannel>(adsense.customchannels().list(adClientId)
+            .setMaxResults(maxPageSize));
+    while (customChannels.hasNext()) {
+      CustomChannel channel = customChannels.next();
+      System.out.printf("Custom channel with code \"%s\" and name \"%s\" was found.\n",
+          channel.getCode(), channel.getName());
+    }
+    if (customChannels.getItemCount() == 0) {
+      System.out.println("No custom channels found.");
+    }
 
     System.out.println();
-    return customChannels;
+    return customChannels.getLastPage();
   }
 }
@@ -43,27 +43,18 @@ public class GetAllSavedAdStyles {
     System.out.println("=================================================================");
 
     // Retrieve saved ad style list and display the data as we receive it.
-    String pageToken = null;
-    SavedAdStyles savedAdStyles = null;
-    do {
-      savedAdStyles = adsense.savedadstyles()
-          .list()
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (savedAdStyles.getItems() != null && !savedAdStyles.getItems().isEmpty()) {
-        for (SavedAdStyle savedAdStyle : savedAdStyles.getItems()) {
-          System.out.printf("Saved ad style with name \"%s\" was found.\n", savedAdStyle.getName());
-        }
-      } else {
-        System.out.println("No saved ad styles found.");
-      }
-
-      pageToken = savedAdStyles.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<SavedAdStyles, SavedAdStyle> savedAdStyles =
+        new PagedFetcher<SavedAdStyles, SavedAdStyle>(adsense.savedadstyles().list()
+            .setMaxResults(maxPageSize));
+    while (savedAdStyles.hasNext()) {
+      SavedAdStyle savedAdStyle = savedAdStyles.next();
+      System.out.printf("Saved ad style with name \"%s\" was found.\n", savedAdStyle.getName());
+    }
+    if (savedAdStyles.getItemCount() == 0) {
+      System.out.println("No saved ad styles found.");
+    }
 
     System.out.println();
-    return savedAdStyles;
+    return savedAdStyles.getLastPage();
   }
 }
@@ -43,29 +43,19 @@ public class GetAllSavedReports {
     System.out.println("=================================================================");
 
     // Retrieve saved report list in pages and display the data as we receive it.
-    String pageToken = null;
-    SavedReports savedReports = null;
-    do {
-      savedReports = adsense.reports()
-          .saved()
-          .list()
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if (savedReports.getItems() != null && !savedReports.getItems().isEmpty()) {
-        for (SavedReport savedReport : savedReports.getItems()) {
-          System.out.printf("Saved report with id \"%s\" and name \"%s\" was found.\n",
-              savedReport.getId(), savedReport.getName());
-        }
-      } else {
-        System.out.println("No saved reports found.");
-      }
-
-      pageToken = savedReports.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<SavedReports, SavedReport> savedReports =
+        new PagedFetcher<SavedReports, SavedReport>(adsense.reports().saved().list()
+            .setMaxResults(maxPageSize));
+    while (savedReports.hasNext()) {
+      SavedReport savedReport = savedReports.next();
+      System.out.printf("Saved report with id \"%s\" and name \"%s\" was found.\n",
+          savedReport.getId(), savedReport.getName());
+    }
+    if (savedReports.getItemCount() == 0) {
+      System.out.println("No saved reports found.");
+    }
 
     System.out.println();
-    return savedReports;
+    return savedReports.getLastPage();
   }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.adsense.cmdline;
+
+import com.google.api.services.adsense.AdSense.Reports.Generate;
+import com.google.api.services.adsense.model.AdsenseReportsGenerateResponse;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fetches a paged report, requesting its pages concurrently.
+ *
+ * <p>
+ * The first page of a report tells how many rows it has, so all remaining pages are then requested
+ * at once, with at most the given number of requests in flight, and handed to a {@link ReportSink}
+ * in order, each as soon as the pages before it were received.
+ * </p>
+ *
+ * <p>
+ * A report with more rows than can be paged through ({@link #ROW_LIMIT}) is split into shards of
+ * consecutive days, each of which is small enough, and the shards are written in date order. This
+ * only gives the same rows as the whole report if it has a {@code DATE} dimension, since the rows
+ * of any other report would be aggregated per shard; other reports are cut off at the limit
+ * instead. The report should also be sorted by date first, if at all. If it is sorted by ascending
+ * date, the days that are complete in the first page are written from it rather than requested
+ * again as part of a shard.
+ * </p>
+ */
+public class ReportFetcher {
+
+  // Maximum number of obtainable rows for paged reports (API limit).
+  static final int ROW_LIMIT = 5000;
+
+  static final int DEFAULT_CONCURRENCY = 8;
+
+  private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  private static final String DATE = "DATE";
+
+  /** Creates the requests of a report. */
+  public interface RequestFactory {
+
+    /**
+     * Returns a new request for the report between the given dates, in yyyy-MM-dd format. The
+     * fetcher sets the start index and maximum number of results of the request.
+     */
+    Generate newRequest(String startDate, String endDate) throws IOException;
+  }
+
+  private final RequestFactory requestFactory;
+
+  private final int maxPageSize;
+
+  private final int concurrency;
+
+  /**
+   * @param requestFactory factory of the requests of the report
+   * @param maxPageSize maximum number of rows of each page
+   * @param concurrency maximum number of requests in flight
+   */
+  public ReportFetcher(RequestFactory requestFactory, int maxPageSize, int concurrency) {
+    this.requestFactory = requestFactory;
+    this.maxPageSize = maxPageSize;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Fetches all rows of the report between the given dates, in yyyy-MM-dd format, and writes them
+   * in order to the given sink, each page as soon as it and the pages before it are received. The
+   * sink is not closed.
+   *
+   * @return number of rows written
+   */
+  public long fetch(String startDate, String endDate, ReportSink sink) throws IOException {
+    DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    Date start;
+    Date end;
+    try {
+      start = dateFormat.parse(startDate);
+      end = dateFormat.parse(endDate);
+    } catch (ParseException e) {
+      throw new IllegalArgumentException("dates must be in yyyy-MM-dd format", e);
+    }
+    Generate request = requestFactory.newRequest(startDate, endDate);
+    boolean byDate = request.getDimension() != null && request.getDimension().contains(DATE);
+    boolean sortedByDate = byDate && request.getSort() != null && !request.getSort().isEmpty()
+        && (request.getSort().get(0).equals(DATE) || request.getSort().get(0).equals("+" + DATE));
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      Fetch fetch = new Fetch(executor, dateFormat, sink, byDate, sortedByDate);
+      fetch.fetchShards(start, end);
+      return fetch.rowCount;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** State of a single {@link ReportFetcher#fetch} call. */
+  private final class Fetch {
+
+    private final ExecutorService executor;
+
+    private final DateFormat dateFormat;
+
+    private final ReportSink sink;
+
+    /** Whether the report has a {@code DATE} dimension, so that it can be split into shards. */
+    private final boolean byDate;
+
+    /** Whether the report is sorted by ascending date first. */
+    private final boolean sortedByDate;
+
+    private boolean headersWritten;
+
+    long rowCount;
+
+    Fetch(ExecutorService executor, DateFormat dateFormat, ReportSink sink, boolean byDate,
+        boolean sortedByDate) {
+      this.executor = executor;
+      this.dateFormat = dateFormat;
+      this.sink = sink;
+      this.byDate = byDate;
+      this.sortedByDate = sortedByDate;
+    }
+
+    /** Fetches the report between the given days, splitting it into shards as needed. */
+    void fetchShards(Date start, Date end) throws IOException {
+      final String startDate = dateFormat.format(start);
+      final String endDate = dateFormat.format(end);
+      AdsenseReportsGenerateResponse first = execute(startDate, endDate, 0, maxPageSize);
+      if (!headersWritten) {
+        // even an empty report has headers, which file sinks write regardless
+        ReportSinks.writeHeaders(sink, first.getHeaders());
+        headersWritten = true;
+      }
+      long matchedRows = first.getTotalMatchedRows() == null ? 0 : first.getTotalMatchedRows();
+      if (matchedRows > ROW_LIMIT && byDate && daysBetween(start, end) > 1) {
+        List<List<String>> rows = first.getRows();
+        if (sortedByDate && rows != null && !rows.isEmpty()) {
+          // the first page is the start of the report, so its days before the last one are complete
+          int dateColumn = getDateColumn(first);
+          String lastDate = rows.get(rows.size() - 1).get(dateColumn);
+          int completeRows = 0;
+          while (rows.get(completeRows).get(dateColumn).compareTo(lastDate) < 0) {
+            completeRows++;
+          }
+          if (completeRows > 0) {
+            writeRows(rows.subList(0, completeRows));
+            matchedRows -= completeRows;
+            start = parseDate(lastDate);
+          }
+        }
+        int days = daysBetween(start, end);
+        // rows are not evenly spread over the days, so a shard may still need to be split further
+        int shardCount = (int) Math.min(days, (matchedRows + ROW_LIMIT - 1) / ROW_LIMIT);
+        int shardDays = (days + shardCount - 1) / shardCount;
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(start);
+        while (!calendar.getTime().after(end)) {
+          Date shardStart = calendar.getTime();
+          calendar.add(Calendar.DATE, shardDays - 1);
+          Date shardEnd = calendar.getTime().after(end) ? end : calendar.getTime();
+          fetchShards(shardStart, shardEnd);
+          calendar.add(Calendar.DATE, 1);
+        }
+        return;
+      }
+      // a single day, or a report without dates, with too many rows is cut off at the limit
+      int totalRows = (int) Math.min(matchedRows, ROW_LIMIT);
+      List<Future<AdsenseReportsGenerateResponse>> pages =
+          new ArrayList<Future<AdsenseReportsGenerateResponse>>();
+      for (int startIndex = maxPageSize; startIndex < totalRows; startIndex += maxPageSize) {
+        final int pageStartIndex = startIndex;
+        final int pageSize = Math.min(maxPageSize, totalRows - startIndex);
+        pages.add(executor.submit(new Callable<AdsenseReportsGenerateResponse>() {
+
+          @Override
+          public AdsenseReportsGenerateResponse call() throws IOException {
+            return execute(startDate, endDate, pageStartIndex, pageSize);
+          }
+        }));
+      }
+      writeRows(first.getRows());
+      for (Future<AdsenseReportsGenerateResponse> page : pages) {
+        // if the report changes in between paged requests, a page may be empty
+        AdsenseReportsGenerateResponse response = getPage(page);
+        writeRows(response.getRows());
+      }
+    }
+
+
+    private Date parseDate(String date) throws IOException {
+      try {
+        return dateFormat.parse(date);
+      } catch (ParseException e) {
+        throw new IOException("unexpected date in report: " + date);
+      }
+    }
+
+    /** Writes the given rows, if any. */
+    private void writeRows(List<List<String>> rows) throws IOException {
+      if (rows != null && !rows.isEmpty()) {
+        sink.writeRows(rows);
+        rowCount += rows.size();
+      }
+    }
+  }
+
+  /** Returns the number of days from the given start date to the given end date, inclusive. */
+  private static int daysBetween(Date start, Date end) {
+    return (int) Math.round((double) (end.getTime() - start.getTime()) / MILLIS_PER_DAY) + 1;
+  }
+
+  /** Returns the index of the {@code DATE} column of the given page. */
+  private static int getDateColumn(AdsenseReportsGenerateResponse page) throws IOException {
+    List<AdsenseReportsGenerateResponse.Headers> headers = page.getHeaders();
+    for (int i = 0; i < headers.size(); i++) {
+      if (DATE.equals(headers.get(i).getName())) {
+        return i;
+      }
+    }
+    throw new IOException("report has no " + DATE + " column");
+  }
+
+  private AdsenseReportsGenerateResponse execute(String startDate, String endDate, int startIndex,
+      int maxResults) throws IOException {
+    Generate request = requestFactory.newRequest(startDate, endDate);
+    if (startIndex != 0) {
+      request.setStartIndex(startIndex);
+    }
+    request.setMaxResults(maxResults);
+    return request.execute();
+  }
+
+  private static AdsenseReportsGenerateResponse getPage(
+      Future<AdsenseReportsGenerateResponse> page) throws IOException {
+    try {
+      return page.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while fetching a report page");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
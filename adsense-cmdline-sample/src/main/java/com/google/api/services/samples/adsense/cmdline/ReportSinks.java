@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2011 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.adsense.cmdline;
+
+import com.google.api.services.adsense.model.AdsenseReportsGenerateResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory of {@link ReportSink}s writing report rows as an aligned table, as CSV, as
+ * newline-delimited JSON or in a compact columnar format.
+ *
+ * <p>
+ * All sinks buffer their output and parse each metric value at most once. The console sink flushes
+ * its output after each page of rows, so that pages are shown as they arrive, and prints the
+ * headers with the first rows; the other sinks write the headers even if the report has no rows,
+ * and only flush their output when they are closed.
+ * </p>
+ */
+public final class ReportSinks {
+
+  /** Width of the columns of the console table. */
+  private static final int TABLE_COLUMN_WIDTH = 25;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Magic number at the start of a columnar report file. */
+  static final int COLUMNAR_MAGIC = 0x52505443;
+
+  static final int COLUMNAR_VERSION = 1;
+
+  /** Columnar type of dimension values, written as modified UTF-8 strings. */
+  static final byte TYPE_STRING = 0;
+
+  /** Columnar type of {@code METRIC_TALLY} values, written as longs. */
+  static final byte TYPE_LONG = 1;
+
+  /** Columnar type of ratio and currency metric values, written as doubles. */
+  static final byte TYPE_DOUBLE = 2;
+
+  private ReportSinks() {
+  }
+
+  /** Writes the headers of a report to the given sink. */
+  public static void writeHeaders(ReportSink sink,
+      List<AdsenseReportsGenerateResponse.Headers> headers) throws IOException {
+    List<String> names = new ArrayList<String>(headers.size());
+    List<String> types = new ArrayList<String>(headers.size());
+    for (AdsenseReportsGenerateResponse.Headers header : headers) {
+      names.add(header.getName());
+      types.add(header.getType());
+    }
+    sink.writeHeaders(names, types);
+  }
+
+  /** Returns a sink printing an aligned table to the console, one page at a time. */
+  public static ReportSink newConsoleSink() {
+    return new TableSink(System.out, true);
+  }
+
+  /** Returns a sink writing CSV with a header line to the given stream. */
+  public static ReportSink newCsvSink(OutputStream out) {
+    return new CsvSink(out);
+  }
+
+  /**
+   * Returns a sink writing one JSON object per row to the given stream, keyed by column name, with
+   * metric values as numbers.
+   */
+  public static ReportSink newNdjsonSink(OutputStream out) {
+    return new NdjsonSink(out);
+  }
+
+  /**
+   * Returns a sink writing the given stream in a compact columnar format.
+   *
+   * <p>
+   * The stream starts with {@link #COLUMNAR_MAGIC}, {@link #COLUMNAR_VERSION} and the number of
+   * columns as ints, followed by the name (as modified UTF-8) and type ({@link #TYPE_STRING},
+   * {@link #TYPE_LONG} or {@link #TYPE_DOUBLE}, as a byte) of each column. Each page of rows is
+   * then written as a block: the number of rows as an int, followed by all values of the first
+   * column, then all values of the second column, and so on. A row count of 0 ends the stream.
+   * Missing or invalid metric values are written as 0 or {@code NaN}.
+   * </p>
+   */
+  public static ReportSink newColumnarSink(OutputStream out) {
+    return new ColumnarSink(out);
+  }
+
+  /**
+   * Returns a sink writing the given file, as CSV if its name ends with {@code .csv}, as
+   * newline-delimited JSON if it ends with {@code .ndjson} or {@code .json}, and in the columnar
+   * format otherwise.
+   */
+  public static ReportSink newFileSink(File file) throws IOException {
+    String name = file.getName().toLowerCase();
+    OutputStream out = new FileOutputStream(file);
+    if (name.endsWith(".csv")) {
+      return newCsvSink(out);
+    }
+    if (name.endsWith(".ndjson") || name.endsWith(".json")) {
+      return newNdjsonSink(out);
+    }
+    return newColumnarSink(out);
+  }
+
+  static byte columnType(String headerType) {
+    if ("METRIC_TALLY".equals(headerType)) {
+      return TYPE_LONG;
+    }
+    if ("METRIC_RATIO".equals(headerType) || "METRIC_CURRENCY".equals(headerType)) {
+      return TYPE_DOUBLE;
+    }
+    return TYPE_STRING;
+  }
+
+  static long parseLong(String value) {
+    try {
+      return value == null ? 0 : Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  static double parseDouble(String value) {
+    try {
+      return value == null ? Double.NaN : Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Sink writing text through a buffered writer, either to a stream it owns or to the console,
+   * which it flushes after each write and never closes.
+   */
+  private abstract static class TextSink implements ReportSink {
+
+    final Writer writer;
+
+    private final boolean console;
+
+    TextSink(OutputStream out, boolean console) {
+      writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8), BUFFER_SIZE);
+      this.console = console;
+    }
+
+    /** Called at the end of each write, to show the written text on the console right away. */
+    void flushIfConsole() throws IOException {
+      if (console) {
+        writer.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (console) {
+        writer.flush();
+      } else {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * Sink printing each value right-aligned in a column of {@link #TABLE_COLUMN_WIDTH}. The headers
+   * are printed with the first rows, so that an empty report prints no table at all.
+   */
+  private static final class TableSink extends TextSink {
+
+    /** Headers that are yet to be printed, or {@code null}. */
+    private List<String> pendingHeaders;
+
+    TableSink(OutputStream out, boolean console) {
+      super(out, console);
+    }
+
+    @Override
+    public void writeHeaders(List<String> names, List<String> types) throws IOException {
+      pendingHeaders = names;
+    }
+
+    @Override
+    public void writeRows(List<List<String>> rows) throws IOException {
+      if (rows.isEmpty()) {
+        return;
+      }
+      if (pendingHeaders != null) {
+        writeLine(pendingHeaders);
+        pendingHeaders = null;
+      }
+      for (List<String> row : rows) {
+        writeLine(row);
+      }
+      flushIfConsole();
+    }
+
+    private void writeLine(List<String> values) throws IOException {
+      for (String value : values) {
+        String text = String.valueOf(value);
+        for (int i = text.length(); i < TABLE_COLUMN_WIDTH; i++) {
+          writer.write(' ');
+        }
+        writer.write(text);
+      }
+      writer.write('\n');
+    }
+  }
+
+  /** Sink writing RFC 4180 CSV. */
+  private static final class CsvSink extends TextSink {
+
+    CsvSink(OutputStream out) {
+      super(out, false);
+    }
+
+    @Override
+    public void writeHeaders(List<String> names, List<String> types) throws IOException {
+      writeLine(names);
+    }
+
+    @Override
+    public void writeRows(List<List<String>> rows) throws IOException {
+      for (List<String> row : rows) {
+        writeLine(row);
+      }
+    }
+
+    private void writeLine(List<String> values) throws IOException {
+      for (int i = 0; i < values.size(); i++) {
+        if (i != 0) {
+          writer.write(',');
+        }
+        String value = values.get(i);
+        if (value == null) {
+          continue;
+        }
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1
+            && value.indexOf('\r') == -1) {
+          writer.write(value);
+        } else {
+          writer.write('"');
+          writer.write(value.replace("\"", "\"\""));
+          writer.write('"');
+        }
+      }
+      writer.write("\r\n");
+    }
+  }
+
+  /** Sink writing one JSON object per line. */
+  private static final class NdjsonSink extends TextSink {
+
+    private String[] names;
+
+    private byte[] types;
+
+    NdjsonSink(OutputStream out) {
+      super(out, false);
+    }
+
+    @Override
+    public void writeHeaders(List<String> names, List<String> types) throws IOException {
+      this.names = names.toArray(new String[names.size()]);
+      this.types = new byte[types.size()];
+      for (int i = 0; i < this.types.length; i++) {
+        this.types[i] = columnType(types.get(i));
+      }
+    }
+
+    @Override
+    public void writeRows(List<List<String>> rows) throws IOException {
+      for (List<String> row : rows) {
+        writer.write('{');
+        for (int i = 0; i < names.length; i++) {
+          if (i != 0) {
+            writer.write(',');
+          }
+          writeString(names[i]);
+          writer.write(':');
+          String value = row.get(i);
+          if (value == null) {
+            writer.write("null");
+          } else if (types[i] == TYPE_LONG) {
+            writer.write(Long.toString(parseLong(value)));
+          } else if (types[i] == TYPE_DOUBLE) {
+            double number = parseDouble(value);
+            // NaN and infinities are not valid JSON numbers
+            writer.write(Double.isNaN(number) || Double.isInfinite(number)
+                ? "null" : Double.toString(number));
+          } else {
+            writeString(value);
+          }
+        }
+        writer.write("}\n");
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      writer.write('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          writer.write('\\');
+          writer.write(c);
+        } else if (c < 0x20) {
+          writer.write(String.format("\\u%04x", (int) c));
+        } else {
+          writer.write(c);
+        }
+      }
+      writer.write('"');
+    }
+  }
+
+  /** Sink writing the columnar format described in {@link ReportSinks#newColumnarSink}. */
+  private static final class ColumnarSink implements ReportSink {
+
+    private final DataOutputStream out;
+
+    private byte[] types;
+
+    ColumnarSink(OutputStream out) {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    @Override
+    public void writeHeaders(List<String> names, List<String> types) throws IOException {
+      this.types = new byte[types.size()];
+      out.writeInt(COLUMNAR_MAGIC);
+      out.writeInt(COLUMNAR_VERSION);
+      out.writeInt(names.size());
+      for (int i = 0; i < this.types.length; i++) {
+        this.types[i] = columnType(types.get(i));
+        out.writeUTF(names.get(i));
+        out.writeByte(this.types[i]);
+      }
+    }
+
+    @Override
+    public void writeRows(List<List<String>> rows) throws IOException {
+      int count = rows.size();
+      if (count == 0) {
+        return;
+      }
+      out.writeInt(count);
+      for (int column = 0; column < types.length; column++) {
+        switch (types[column]) {
+          case TYPE_LONG:
+            long[] longs = new long[count];
+            for (int row = 0; row < count; row++) {
+              longs[row] = parseLong(rows.get(row).get(column));
+            }
+            for (long value : longs) {
+              out.writeLong(value);
+            }
+            break;
+          case TYPE_DOUBLE:
+            double[] doubles = new double[count];
+            for (int row = 0; row < count; row++) {
+              doubles[row] = parseDouble(rows.get(row).get(column));
+            }
+            for (double value : doubles) {
+              out.writeDouble(value);
+            }
+            break;
+          default:
+            for (int row = 0; row < count; row++) {
+              String value = rows.get(row).get(column);
+              out.writeUTF(value == null ? "" : value);
+            }
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        if (types != null) {
+          out.writeInt(0);
+        }
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
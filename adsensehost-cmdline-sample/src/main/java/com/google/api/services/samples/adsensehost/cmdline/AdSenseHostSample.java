@@ -90,8 +90,8 @@ public class AdSenseHostSample {
   // Global instance of the JSON factory.
   private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 
-  // Maximum page size for list calls.
-  private static final long MAX_LIST_PAGE_SIZE = 50;
+  // Maximum page size for list calls, the largest the list methods accept.
+  private static final long MAX_LIST_PAGE_SIZE = 10000;
   // Change this constant to an example publisher account ID if you want the
   // publisher samples to run.
   private static final String PUB_ACCOUNT_ID = "INSERT_CLIENT_PUB_ID_HERE";
@@ -41,31 +41,22 @@ public class GetAllAdClientsForHost {
     System.out.println("=================================================================");
 
     // Retrieve ad client list in pages and display data as we receive it.
-    String pageToken = null;
-    AdClients adClients = null;
-    do {
-      adClients = service.adclients().list()
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if ((adClients.getItems() != null) && !adClients.getItems().isEmpty()) {
-        for (AdClient adClient : adClients.getItems()) {
-          System.out.printf("Ad client for product \"%s\" with ID \"%s\" was found.\n",
-              adClient.getProductCode(), adClient.getId());
-          System.out.printf("\tSupports reporting: %s\n",
-              adClient.getSupportsReporting() ? "Yes" : "No");
-        }
-      } else {
-        System.out.println("No ad clients found.");
-      }
-
-      pageToken = adClients.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<AdClients, AdClient> adClients = new PagedFetcher<AdClients, AdClient>(
+        service.adclients().list().setMaxResults(maxPageSize));
+    while (adClients.hasNext()) {
+      AdClient adClient = adClients.next();
+      System.out.printf("Ad client for product \"%s\" with ID \"%s\" was found.\n",
+          adClient.getProductCode(), adClient.getId());
+      System.out.printf("\tSupports reporting: %s\n",
+          adClient.getSupportsReporting() ? "Yes" : "No");
+    }
+    if (adClients.getItemCount() == 0) {
+      System.out.println("No ad clients found.");
+    }
 
     System.out.println();
 
     // Return the last page of ad clients, so that the main sample has something to run.
-    return adClients;
+    return adClients.getLastPage();
   }
 }
@@ -44,24 +44,16 @@ public class GetAllUrlChannelsForHost {
     System.out.println("=================================================================");
 
     // Retrieve URL channel list in pages and display the data as we receive it.
-    String pageToken = null;
-    do {
-      UrlChannels urlChannels = adsensehost.urlchannels().list(adClientId)
-          .setMaxResults(maxPageSize)
-          .setPageToken(pageToken)
-          .execute();
-
-      if ((urlChannels.getItems() != null) && !urlChannels.getItems().isEmpty()) {
-        for (UrlChannel channel : urlChannels.getItems()) {
-          System.out.printf("URL channel with ID \"%s\" and URL pattern \"%s\" was found.\n",
-              channel.getId(), channel.getUrlPattern());
-        }
-      } else {
-        System.out.println("No URL channels found.");
-      }
-
-      pageToken = urlChannels.getNextPageToken();
-    } while (pageToken != null);
+    PagedFetcher<UrlChannels, UrlChannel> urlChannels = new PagedFetcher<UrlChannels, UrlChannel>(
+        adsensehost.urlchannels().list(adClientId).setMaxResults(maxPageSize));
+    while (urlChannels.hasNext()) {
+      UrlChannel channel = urlChannels.next();
+      System.out.printf("URL channel with ID \"%s\" and URL pattern \"%s\" was found.\n",
+          channel.getId(), channel.getUrlPattern());
+    }
+    if (urlChannels.getItemCount() == 0) {
+      System.out.println("No URL channels found.");
+    }
 
     System.out.println();
   }
@@ -12,7 +12,6 @@ import com.google.api.services.bigquery.model.Table;
 import com.google.api.services.bigquery.model.TableDataList;
 import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.api.services.bigquery.model.TableReference;
-import com.google.api.services.bigquery.model.TableRow;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.RetryOptions;
@@ -37,6 +36,9 @@ public class BigqueryUtils {
   static final String projectId =
       System.getProperty("com.google.api.client.sample.bigquery.appengine.dashboard.projectId");
 
+  /** Number of times a copy or cleanup task is retried before the refresh is abandoned. */
+  static final int COPY_TASK_RETRY_LIMIT = 3;
+
   private final String userId;
   final Bigquery bigquery;
   private Job job;
@@ -51,7 +53,7 @@ public class BigqueryUtils {
     bigquery = ServiceUtils.loadBigqueryClient(userId);
 
     if (jobId != null) {
-      job = tryToDo(new Callable<Job>() {
+      job = tryToDo(Metrics.JOBS_GET, new Callable<Job>() {
         @Override
         public Job call() throws Exception {
           return bigquery.jobs().get(projectId, jobId).execute();
@@ -68,7 +70,7 @@ public class BigqueryUtils {
   public void beginQuery() throws SampleDashboardException {
     final Job queryJob = makeJob(buildExampleQuery());
 
-    job = tryToDo(new Callable<Job>() {
+    job = tryToDo(Metrics.JOBS_INSERT, new Callable<Job>() {
       @Override
       public Job call() throws Exception {
         return bigquery.jobs().insert(projectId, queryJob).execute();
@@ -103,7 +105,7 @@ public class BigqueryUtils {
     if (job != null) {
       final TableReference tableReference = job.getConfiguration().getQuery().getDestinationTable();
 
-      Table table = tryToDo(new Callable<Table>() {
+      Table table = tryToDo(Metrics.TABLES_GET, new Callable<Table>() {
         @Override
         public Table call() throws IOException {
           return bigquery.tables().get(tableReference.getProjectId(), tableReference.getDatasetId(),
@@ -119,21 +121,29 @@ public class BigqueryUtils {
     return null;
   }
 
-  public List<TableRow> getTableData() throws SampleDashboardException {
+  /**
+   * Fetches a single page of the query's destination table, starting at the given page token (or at
+   * the first row if it is {@code null}). The next page token is available from the returned list.
+   */
+  public TableDataList getTableDataPage(final String pageToken, final long maxResults)
+      throws SampleDashboardException {
     if (job != null) {
       final TableReference tableReference = job.getConfiguration().getQuery().getDestinationTable();
 
-      TableDataList tableDataList = tryToDo(new Callable<TableDataList>() {
+      TableDataList tableDataList = tryToDo(Metrics.TABLEDATA_LIST, new Callable<TableDataList>() {
         @Override
         public TableDataList call() throws IOException {
           return bigquery.tabledata().list(tableReference.getProjectId(),
-              tableReference.getDatasetId(), tableReference.getTableId()).execute();
+              tableReference.getDatasetId(), tableReference.getTableId())
+              .setPageToken(pageToken).setMaxResults(maxResults).execute();
         }
       });
 
       Preconditions.checkNotNull(tableDataList);
-      Preconditions.checkNotNull(tableDataList.getRows());
-      return tableDataList.getRows();
+      if (tableDataList.getRows() != null) {
+        Metrics.increment(Metrics.ROWS_FETCHED, tableDataList.getRows().size());
+      }
+      return tableDataList;
     }
     return null;
   }
@@ -154,6 +164,40 @@ public class BigqueryUtils {
     queue.add(options);
   }
 
+  /**
+   * Returns a task that copies the finished job's results into the datastore, starting at the given
+   * page token. It is enqueued by {@link DatastoreUtils} together with the checkpoint of the token
+   * in the user entity, so a retried task resumes from the same page while a stale duplicate is
+   * ignored.
+   */
+  public TaskOptions newCopyTask(String pageToken) {
+    TaskOptions options = TaskOptions.Builder.withDefaults();
+    options.param("jobId", job.getJobReference().getJobId());
+    options.param("userId", userId);
+    options.param("step", TaskServlet.STEP_COPY);
+    if (pageToken != null) {
+      options.param("pageToken", pageToken);
+    }
+    options.url("/task");
+    options.retryOptions(RetryOptions.Builder.withTaskRetryLimit(COPY_TASK_RETRY_LIMIT));
+    return options;
+  }
+
+  /**
+   * Enqueues a task that removes results which are no longer referenced by the user's current
+   * generation.
+   */
+  public static void enqueueCleanupTask(String userId) {
+    TaskOptions options = TaskOptions.Builder.withDefaults();
+    options.param("userId", userId);
+    options.param("step", TaskServlet.STEP_CLEANUP);
+    options.url("/task");
+    options.retryOptions(RetryOptions.Builder.withTaskRetryLimit(COPY_TASK_RETRY_LIMIT));
+
+    Queue queue = QueueFactory.getDefaultQueue();
+    queue.add(options);
+  }
+
   public static String buildExampleQuery() {
     String[] west = {"WA", "OR", "CA", "AK", "HI", "ID", "MT", "WY", "NV", "UT", "CO", "AZ", "NM"};
     String[] south = {"OK", "TX", "AR", "LA", "TN", "MS", "AL", "KY", "GA", "FL", "SC", "NC", "VA",
@@ -200,19 +244,24 @@ public class BigqueryUtils {
 
   /**
    * Attempts to run the given callback with a number of retries. If the callback responds with
-   * SC_UNAUTHORIZED, the tokens are refreshed.
+   * SC_UNAUTHORIZED, the tokens are refreshed. Each attempt is timed as the given {@link Metrics}
+   * stage.
    *
    * @throws SampleDashboardException
    */
-  private <T> T tryToDo(Callable<T> callback) throws SampleDashboardException {
+  private <T> T tryToDo(String stage, Callable<T> callback) throws SampleDashboardException {
     int retries = 3;
     int currentTry = 0;
     SampleDashboardException sdex = null;
     while (currentTry < retries) {
       currentTry++;
+      Metrics.Timer timer = Metrics.start(stage);
       try {
-        return callback.call();
+        T result = callback.call();
+        timer.stop();
+        return result;
       } catch (Exception ex) {
+        timer.fail();
         sdex = new SampleDashboardException(ex);
         log.warning("Caught exception (" + sdex.getStatusCode() + "): " + ex);
       }
@@ -6,7 +6,10 @@ import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.users.UserServiceFactory;
 import com.google.gson.stream.JsonWriter;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.List;
 
 import javax.servlet.http.HttpServlet;
@@ -39,16 +42,25 @@ public class DataServlet extends HttpServlet {
   @Override
   protected void doPost(HttpServletRequest request, HttpServletResponse response)
       throws IOException {
-    JsonWriter jsonWriter = new JsonWriter(response.getWriter()).beginObject();
+    // Count the encoded bytes rather than the characters, which differ for non-ASCII text.
+    CountingOutputStream countingStream = new CountingOutputStream(response.getOutputStream());
+    JsonWriter jsonWriter = new JsonWriter(
+        new OutputStreamWriter(countingStream, response.getCharacterEncoding())).beginObject();
     String userId = UserServiceFactory.getUserService().getCurrentUser().getUserId();
     DatastoreUtils datastoreUtils = new DatastoreUtils(userId);
 
-    String jobStatus = datastoreUtils.getUserJobStatus();
-
-    if (("DONE").equalsIgnoreCase(jobStatus)) {
+    // The committed generation stays valid while a refresh is running, whatever its status.
+    if (datastoreUtils.hasCommittedGeneration()
+        || ("DONE").equalsIgnoreCase(datastoreUtils.getUserJobStatus())) {
       List<Entity> results = datastoreUtils.getResults();
       if (!results.isEmpty()) {
-        writeResultsToMotionChartJson(jsonWriter, results);
+        Metrics.Timer timer = Metrics.start(Metrics.JSON_WRITE);
+        try {
+          writeResultsToMotionChartJson(jsonWriter, results);
+        } finally {
+          timer.stop();
+        }
+        Metrics.increment(Metrics.ROWS_SERVED, results.size());
       }
     }
 
@@ -57,6 +69,30 @@ public class DataServlet extends HttpServlet {
     jsonWriter.name("lastRun").value(datastoreUtils.getUserLastRunMessage());
 
     jsonWriter.endObject().close();
+    Metrics.increment(Metrics.BYTES_SERVED, countingStream.count);
+  }
+
+  /** Output stream that counts the bytes written through it. */
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      // FilterOutputStream would write the bytes one at a time
+      out.write(b, off, len);
+      count += len;
+    }
   }
 
   /**
@@ -14,9 +14,14 @@ import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.base.Objects;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +35,12 @@ public class DatastoreUtils {
 
   public static final String FAILED = "FAILED";
 
+  /** Kind of the (never stored) parent keys that group one refresh's worth of results. */
+  private static final String GENERATION_KIND = "Generation";
+
+  /** Number of times a transactional update of the user entity is attempted. */
+  private static final int UPDATE_ATTEMPTS = 3;
+
   private final Key userEntityKey;
   private final String resultKind;
   private final DatastoreService service;
@@ -40,10 +51,13 @@ public class DatastoreUtils {
     service = DatastoreServiceFactory.getDatastoreService();
     resultKind = userId + "Result";
 
+    Metrics.Timer timer = Metrics.start(Metrics.DATASTORE_GET);
     try {
       userEntity = service.get(userEntityKey);
     } catch (EntityNotFoundException e) {
       userEntity = null;
+    } finally {
+      timer.stop();
     }
   }
 
@@ -51,29 +65,18 @@ public class DatastoreUtils {
     return userEntity != null;
   }
 
-  private void createUserIfNull() {
-    if (userEntity == null) {
-      userEntity = new Entity(userEntityKey);
-    }
-  }
-
-  /**
-   * Updates the user entity with the message and status, creating it if necessary.
-   */
-  public void putUserInformation(String message, String status) {
-    createUserIfNull();
-    userEntity.setProperty("jobStatus", status);
-    userEntity.setProperty("message", message);
-    service.put(userEntity);
-  }
-
   /**
-   * Updates the user entity with the current time, creating it if necessary.
+   * Updates the message and status of the user entity, creating it if necessary. Other properties,
+   * such as the copy checkpoint written concurrently by a task, are left as they are.
    */
-  public void updateSuccessfulQueryTimestamp() {
-    createUserIfNull();
-    userEntity.setProperty("timestamp", System.currentTimeMillis());
-    service.put(userEntity);
+  public void putUserInformation(final String message, final String status) {
+    updateUserEntity(new Update() {
+      @Override
+      public boolean apply(Entity entity) {
+        setUserInformation(entity, message, status);
+        return true;
+      }
+    }, null);
   }
 
   public String getUserJobStatus() {
@@ -105,34 +108,190 @@ public class DatastoreUtils {
     return null;
   }
 
+  /**
+   * Returns the results of the user's current generation. Results stored directly under the user
+   * entity, before generations were introduced, are returned until the first refresh completes.
+   */
   public List<Entity> getResults() {
-    Query query = new Query(resultKind, userEntityKey);
+    Long generation = getGeneration("generation");
     FetchOptions options = FetchOptions.Builder.withChunkSize(2000);
-    return service.prepare(query).asList(options);
+    Metrics.Timer timer = Metrics.start(Metrics.DATASTORE_QUERY);
+    try {
+      if (generation != null) {
+        Query query = new Query(resultKind, getGenerationKey(generation));
+        return new ArrayList<Entity>(service.prepare(query).asList(options));
+      }
+      Query query = new Query(resultKind, userEntityKey);
+      ArrayList<Entity> results = new ArrayList<Entity>();
+      for (Entity entity : service.prepare(query).asIterable(options)) {
+        if (userEntityKey.equals(entity.getKey().getParent())) {
+          results.add(entity);
+        }
+      }
+      return results;
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Returns whether a refresh has completed since generations were introduced, in which case
+   * {@link #getResults()} returns its results whatever the status of a later refresh.
+   */
+  public boolean hasCommittedGeneration() {
+    return getGeneration("generation") != null;
+  }
+
+  /**
+   * Starts a new, not yet visible generation of results for the given job, resets the copy
+   * checkpoint, sets the message and status and enqueues the given task to copy the first page, in
+   * the same transaction. Rows copied into the generation are only returned by
+   * {@link #getResults()} once it has been committed, so the previous results stay visible for the
+   * whole refresh.
+   */
+  public void beginPendingGeneration(final String jobId, TaskOptions copyTask,
+      final String message, final String status) {
+    updateUserEntity(new Update() {
+      @Override
+      public boolean apply(Entity entity) {
+        Long current = (Long) entity.getProperty("generation");
+        Long pending = (Long) entity.getProperty("pendingGeneration");
+        long next = Math.max(current == null ? 0 : current, pending == null ? 0 : pending) + 1;
+        entity.setProperty("pendingGeneration", next);
+        entity.setProperty("pendingJobId", jobId);
+        entity.removeProperty("pageToken");
+        entity.setProperty("rowsCopied", 0L);
+        setUserInformation(entity, message, status);
+        return true;
+      }
+    }, copyTask);
+  }
+
+  /**
+   * Returns whether the given task belongs to the refresh currently in progress, i.e. it was
+   * enqueued for the pending job at the checkpointed page token.
+   */
+  public boolean isPendingCheckpoint(String jobId, String pageToken) {
+    return userEntity != null && jobId != null
+        && jobId.equals(getUserEntityProperty("pendingJobId"))
+        && Objects.equal(pageToken, getUserEntityProperty("pageToken"));
+  }
+
+  public long getRowsCopied() {
+    String rowsCopied = getUserEntityProperty("rowsCopied");
+    return rowsCopied == null ? 0 : Long.valueOf(rowsCopied);
+  }
+
+  /**
+   * Records how far the copy into the pending generation has progressed, sets the message and
+   * status and enqueues the given task to continue from there, in the same transaction, so that the
+   * checkpoint never refers to a task that was not enqueued. Nothing is changed if the checkpoint
+   * moved on since the task that copied the rows started, at {@code fromPageToken}.
+   *
+   * @return whether the checkpoint was recorded
+   */
+  public boolean checkpointPendingGeneration(final String jobId, final String fromPageToken,
+      final String pageToken, final long rowsCopied, TaskOptions copyTask, final String message,
+      final String status) {
+    return updateUserEntity(new Update() {
+      @Override
+      public boolean apply(Entity entity) {
+        if (!isCheckpoint(entity, jobId, fromPageToken)) {
+          return false;
+        }
+        entity.setProperty("pageToken", pageToken);
+        entity.setProperty("rowsCopied", rowsCopied);
+        setUserInformation(entity, message, status);
+        return true;
+      }
+    }, copyTask);
   }
 
   /**
-   * Removes any existing results for the user from the datastore.
+   * Makes the pending generation the one returned by {@link #getResults()}, records the time of the
+   * successful query and sets the message and status, in a single transaction. Results of older
+   * generations are left behind for {@link #deleteStaleResults(int)}. Nothing is changed if the
+   * checkpoint moved on since the task that copied the last rows started, at
+   * {@code fromPageToken}.
+   *
+   * @return whether the generation was committed
    */
-  public void deleteExistingResults() {
+  public boolean commitPendingGeneration(final String jobId, final String fromPageToken,
+      final String message, final String status) {
+    return updateUserEntity(new Update() {
+      @Override
+      public boolean apply(Entity entity) {
+        if (!isCheckpoint(entity, jobId, fromPageToken)) {
+          return false;
+        }
+        entity.setProperty("generation", entity.getProperty("pendingGeneration"));
+        entity.removeProperty("pendingGeneration");
+        entity.removeProperty("pendingJobId");
+        entity.removeProperty("pageToken");
+        entity.removeProperty("rowsCopied");
+        entity.setProperty("timestamp", System.currentTimeMillis());
+        setUserInformation(entity, message, status);
+        return true;
+      }
+    }, null);
+  }
+
+  /**
+   * Removes up to {@code limit} results for the user that belong to generations older than the
+   * committed one, or that were stored before generations were introduced. Generations are
+   * numbered in increasing order, so the results of a refresh that began after this entity was read
+   * are never removed.
+   *
+   * @return whether more stale results may remain
+   */
+  public boolean deleteStaleResults(int limit) {
+    Long generation = getGeneration("generation");
+    if (generation == null) {
+      return false;
+    }
+
+    Query query = new Query(resultKind, userEntityKey).setKeysOnly();
     ArrayList<Key> keys = new ArrayList<Key>();
-    List<Entity> results = getResults();
-    for (Entity entity : results) {
-      keys.add(entity.getKey());
+    Metrics.Timer timer = Metrics.start(Metrics.DATASTORE_QUERY);
+    try {
+      for (Entity entity : service.prepare(query).asIterable(
+          FetchOptions.Builder.withChunkSize(limit))) {
+        Key parent = entity.getKey().getParent();
+        if (parent.equals(userEntityKey)
+            || (GENERATION_KIND.equals(parent.getKind()) && parent.getId() < generation)) {
+          keys.add(entity.getKey());
+          if (keys.size() == limit) {
+            break;
+          }
+        }
+      }
+    } finally {
+      timer.stop();
     }
-    service.delete(keys);
+
+    timer = Metrics.start(Metrics.DATASTORE_DELETE);
+    try {
+      service.delete(keys);
+    } finally {
+      timer.stop();
+    }
+    Metrics.increment(Metrics.ROWS_DELETED, keys.size());
+    return keys.size() == limit;
   }
 
   /**
-   * Copies each row of the given data into an entity, then puts all the entities
-   * to the datastore with the user's entity as their ancestor.
+   * Copies each row of the given data into an entity, then puts all the entities to the datastore
+   * as children of the user's pending generation. Entity ids are derived from the row's position in
+   * the result, so copying the same page twice overwrites rather than duplicates it.
    */
   public void copyQueryResultsToDatastore(List<TableFieldSchema> fields,
-      List<TableRow> rows) {
+      List<TableRow> rows, long firstRowIndex) {
+    Key generationKey = getGenerationKey(getGeneration("pendingGeneration"));
     ArrayList<Entity> entities = new ArrayList<Entity>();
     Iterator<TableRow> rowsIterator = rows.iterator();
+    long rowIndex = firstRowIndex;
     while (rowsIterator.hasNext()) {
-      Entity entity = new Entity(resultKind, userEntityKey);
+      Entity entity = new Entity(resultKind, ++rowIndex, generationKey);
 
       // Copy the row into the entity -- fields become properties.
       Iterator<TableFieldSchema> fieldsIterator = fields.iterator();
@@ -147,6 +306,90 @@ public class DatastoreUtils {
       }
       entities.add(entity);
     }
-    service.put(entities);
+
+    Metrics.Timer timer = Metrics.start(Metrics.DATASTORE_PUT);
+    try {
+      service.put(entities);
+    } finally {
+      timer.stop();
+    }
+    Metrics.increment(Metrics.ROWS_COPIED, entities.size());
+  }
+
+  /** Change to the user entity, applied by {@link #updateUserEntity}. */
+  private interface Update {
+
+    /**
+     * Applies the change to the given entity, which was just read in a transaction.
+     *
+     * @return whether to store the changed entity, or {@code false} to leave it unchanged
+     */
+    boolean apply(Entity entity);
+  }
+
+  /**
+   * Reads the user entity in a transaction, creating it if necessary, applies the given change to
+   * it, and stores it and enqueues the given task, if any, in the same transaction. The transaction
+   * is retried if another request changed the entity concurrently.
+   *
+   * @return whether the change was stored
+   */
+  private boolean updateUserEntity(Update update, TaskOptions task) {
+    Metrics.Timer timer = Metrics.start(Metrics.DATASTORE_PUT);
+    try {
+      for (int attempt = 1;; attempt++) {
+        Transaction txn = service.beginTransaction();
+        try {
+          Entity entity;
+          try {
+            entity = service.get(txn, userEntityKey);
+          } catch (EntityNotFoundException e) {
+            entity = new Entity(userEntityKey);
+          }
+          if (!update.apply(entity)) {
+            return false;
+          }
+          service.put(txn, entity);
+          if (task != null) {
+            QueueFactory.getDefaultQueue().add(txn, task);
+          }
+          txn.commit();
+          userEntity = entity;
+          return true;
+        } catch (ConcurrentModificationException e) {
+          if (attempt == UPDATE_ATTEMPTS) {
+            throw e;
+          }
+        } finally {
+          if (txn.isActive()) {
+            txn.rollback();
+          }
+        }
+      }
+    } finally {
+      timer.stop();
+    }
+  }
+
+  private static void setUserInformation(Entity entity, String message, String status) {
+    entity.setProperty("jobStatus", status);
+    entity.setProperty("message", message);
+  }
+
+  /**
+   * Returns whether the given entity's checkpoint is the given page token of the given pending job.
+   */
+  private static boolean isCheckpoint(Entity entity, String jobId, String pageToken) {
+    return jobId != null && jobId.equals(entity.getProperty("pendingJobId"))
+        && Objects.equal(pageToken, entity.getProperty("pageToken"));
+  }
+
+  private Long getGeneration(String propertyName) {
+    String generation = getUserEntityProperty(propertyName);
+    return generation == null ? null : Long.valueOf(generation);
+  }
+
+  private Key getGenerationKey(long generation) {
+    return KeyFactory.createKey(userEntityKey, GENERATION_KIND, generation);
   }
 }
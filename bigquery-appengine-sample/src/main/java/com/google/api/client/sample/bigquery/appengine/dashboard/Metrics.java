@@ -0,0 +1,173 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.api.client.sample.bigquery.appengine.dashboard;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lightweight in-memory latency histograms and counters for the stages of the dashboard's request
+ * path (Bigquery calls, datastore operations, JSON writing). Values are kept per App Engine
+ * instance and exposed by {@link MetricsServlet} in the Prometheus text format.
+ *
+ * <p>
+ * Typical use:
+ * </p>
+ *
+ * <pre>
+ * Metrics.Timer timer = Metrics.start(Metrics.DATASTORE_PUT);
+ * try {
+ *   service.put(entities);
+ * } finally {
+ *   timer.stop();
+ * }
+ * </pre>
+ */
+class Metrics {
+
+  static final String JOBS_INSERT = "jobs.insert";
+  static final String JOBS_GET = "jobs.get";
+  static final String TABLES_GET = "tables.get";
+  static final String TABLEDATA_LIST = "tabledata.list";
+  static final String DATASTORE_GET = "datastore.get";
+  static final String DATASTORE_QUERY = "datastore.query";
+  static final String DATASTORE_PUT = "datastore.put";
+  static final String DATASTORE_DELETE = "datastore.delete";
+  static final String JSON_WRITE = "json.write";
+
+  static final String ROWS_FETCHED = "rows_fetched";
+  static final String ROWS_COPIED = "rows_copied";
+  static final String ROWS_DELETED = "rows_deleted";
+  static final String ROWS_SERVED = "rows_served";
+  static final String BYTES_SERVED = "bytes_served";
+
+  /** Upper bounds (inclusive) of the latency histogram buckets, in milliseconds. */
+  private static final long[] BUCKET_BOUNDS_MILLIS =
+      {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+  private static final ConcurrentMap<String, Stage> stages =
+      new ConcurrentHashMap<String, Stage>();
+  private static final ConcurrentMap<String, AtomicLong> counters =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  /** Latency histogram and error count of a single stage. */
+  private static final class Stage {
+    /** One count per bucket, plus a final overflow bucket. */
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong totalMillis = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+
+    void record(long millis, boolean failed) {
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+        bucket++;
+      }
+      buckets.incrementAndGet(bucket);
+      count.incrementAndGet();
+      totalMillis.addAndGet(millis);
+      if (failed) {
+        errors.incrementAndGet();
+      }
+    }
+  }
+
+  /** Measures a single execution of a stage; call {@link #stop()} or {@link #fail()} once. */
+  static final class Timer {
+    private final Stage stage;
+    private final long startNanos = System.nanoTime();
+    private boolean stopped;
+
+    Timer(Stage stage) {
+      this.stage = stage;
+    }
+
+    /** Records the elapsed time, unless {@link #fail()} was already called. */
+    void stop() {
+      record(false);
+    }
+
+    /** Records the elapsed time and counts an error for the stage. */
+    void fail() {
+      record(true);
+    }
+
+    private void record(boolean failed) {
+      if (!stopped) {
+        stopped = true;
+        stage.record((System.nanoTime() - startNanos) / 1000000, failed);
+      }
+    }
+  }
+
+  static Timer start(String stageName) {
+    return new Timer(getStage(stageName));
+  }
+
+  static void increment(String counterName, long delta) {
+    AtomicLong counter = counters.get(counterName);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = counters.putIfAbsent(counterName, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    counter.addAndGet(delta);
+  }
+
+  /**
+   * Writes all histograms and counters, sorted by name, in the Prometheus text exposition format.
+   */
+  static void writeText(PrintWriter writer) {
+    writer.println("# TYPE dashboard_stage_latency_millis histogram");
+    for (Map.Entry<String, Stage> entry : new TreeMap<String, Stage>(stages).entrySet()) {
+      String label = "stage=\"" + entry.getKey() + "\"";
+      Stage stage = entry.getValue();
+      long cumulative = 0;
+      for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+        cumulative += stage.buckets.get(i);
+        writer.println("dashboard_stage_latency_millis_bucket{" + label + ",le=\""
+            + BUCKET_BOUNDS_MILLIS[i] + "\"} " + cumulative);
+      }
+      cumulative += stage.buckets.get(BUCKET_BOUNDS_MILLIS.length);
+      writer.println("dashboard_stage_latency_millis_bucket{" + label + ",le=\"+Inf\"} "
+          + cumulative);
+      writer.println("dashboard_stage_latency_millis_sum{" + label + "} " + stage.totalMillis.get());
+      writer.println("dashboard_stage_latency_millis_count{" + label + "} " + stage.count.get());
+    }
+
+    writer.println("# TYPE dashboard_stage_errors_total counter");
+    for (Map.Entry<String, Stage> entry : new TreeMap<String, Stage>(stages).entrySet()) {
+      writer.println("dashboard_stage_errors_total{stage=\"" + entry.getKey() + "\"} "
+          + entry.getValue().errors.get());
+    }
+
+    for (Map.Entry<String, AtomicLong> entry :
+        new TreeMap<String, AtomicLong>(counters).entrySet()) {
+      String name = "dashboard_" + entry.getKey() + "_total";
+      writer.println("# TYPE " + name + " counter");
+      writer.println(name + " " + entry.getValue().get());
+    }
+  }
+
+  private static Stage getStage(String stageName) {
+    Stage stage = stages.get(stageName);
+    if (stage == null) {
+      Stage newStage = new Stage();
+      stage = stages.putIfAbsent(stageName, newStage);
+      if (stage == null) {
+        stage = newStage;
+      }
+    }
+    return stage;
+  }
+
+  private Metrics() {
+  }
+}
@@ -0,0 +1,32 @@
+// Copyright 2011 Google Inc. All Rights Reserved.
+
+package com.google.api.client.sample.bigquery.appengine.dashboard;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This servlet responds to a get request with the latency histograms and counters collected by
+ * {@link Metrics} on the serving instance, in the Prometheus text format.
+ *
+ * <b>Note:</b> Because of the auth-constraint defined in web.xml, this can only be called by
+ * administrators of the application.
+ */
+public class MetricsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setContentType("text/plain; version=0.0.4");
+    response.setCharacterEncoding("UTF-8");
+    PrintWriter writer = response.getWriter();
+    Metrics.writeText(writer);
+    writer.flush();
+  }
+}
@@ -2,7 +2,12 @@
 
 package com.google.api.client.sample.bigquery.appengine.dashboard;
 
+import com.google.api.services.bigquery.model.TableDataList;
+import com.google.api.services.bigquery.model.TableFieldSchema;
+import com.google.api.services.bigquery.model.TableRow;
+
 import java.io.IOException;
+import java.util.List;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServlet;
@@ -13,11 +18,17 @@ import javax.servlet.http.HttpServletResponse;
  * This servlet receives a post request when the task that was waiting for the query to finish comes
  * out of the App Engine task queue. It gets the status of the query from Bigquery and:
  * <ul>
- * <li>copies the results to the datastore if the query has finished successfully</li>
+ * <li>starts copying the results to the datastore if the query has finished successfully</li>
  * <li>enqueues another task to wait if the query is running/pending</li>
  * <li>handles query failure</li>
  * </ul>
  *
+ * Results are copied a few pages per task into a new generation that is only made visible once the
+ * last page has been written, so a refresh is not bound by the request deadline and the previous
+ * results stay available until then. Each copy task checkpoints its progress in the user entity and
+ * re-enqueues itself with the next page token; a failed copy task is retried by the task queue from
+ * the same checkpoint. A final task removes the superseded generation.
+ *
  * <b>Note:</b> Because of the auth-constraint defined in web.xml, this can only be called by App
  * Engine, and not by users.
  *
@@ -28,33 +39,58 @@ public class TaskServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
   private static final Logger log = Logger.getLogger(TaskServlet.class.getName());
 
+  static final String STEP_COPY = "copy";
+  static final String STEP_CLEANUP = "cleanup";
+
+  /** Maximum number of rows requested per page, also the size of each datastore batch put. */
+  private static final long ROWS_PER_PAGE = 500;
+
+  /** Number of pages copied by a single task before it re-enqueues itself. */
+  private static final int PAGES_PER_TASK = 5;
+
+  /** Maximum number of stale results deleted by a single cleanup task. */
+  private static final int DELETES_PER_TASK = 500;
+
   @Override
   protected void doPost(HttpServletRequest request, HttpServletResponse response)
       throws IOException {
     String userId = request.getParameter("userId");
     String jobId = request.getParameter("jobId");
+    String step = request.getParameter("step");
 
     DatastoreUtils datastoreUtils = new DatastoreUtils(userId);
+    if (STEP_CLEANUP.equals(step)) {
+      if (datastoreUtils.deleteStaleResults(DELETES_PER_TASK)) {
+        BigqueryUtils.enqueueCleanupTask(userId);
+      }
+      return;
+    }
+
+    String pageToken = request.getParameter("pageToken");
+    if (STEP_COPY.equals(step) && !datastoreUtils.isPendingCheckpoint(jobId, pageToken)) {
+      // Superseded by a newer query or a duplicate delivery of a task that already ran.
+      log.info("Ignoring stale copy task for job " + jobId);
+      return;
+    }
+
     String message;
     String status = DatastoreUtils.FAILED;
 
     try {
       BigqueryUtils bigqueryUtils = new BigqueryUtils(userId, jobId);
 
-      // If the job is done, handle it; otherwise, enqueue another task to wait for it.
-      if (bigqueryUtils.jobIsDone()) {
-        // Delete any previous results for this user.
-        datastoreUtils.deleteExistingResults();
-
-        // If the job succeeded, copy the results to the datastore.
+      if (STEP_COPY.equals(step)) {
+        // The message and status are written together with the checkpoint.
+        if (copyPages(bigqueryUtils, datastoreUtils, jobId, pageToken)) {
+          BigqueryUtils.enqueueCleanupTask(userId);
+        }
+        return;
+      } else if (bigqueryUtils.jobIsDone()) {
+        // If the job succeeded, start copying the results to the datastore.
         if (bigqueryUtils.jobSucceeded()) {
-          datastoreUtils.copyQueryResultsToDatastore(
-              bigqueryUtils.getSchemaFieldNames(), bigqueryUtils.getTableData());
-
-          message = "Here are your results!";
-          status = bigqueryUtils.getJobStatus();
-
-          datastoreUtils.updateSuccessfulQueryTimestamp();
+          datastoreUtils.beginPendingGeneration(jobId, bigqueryUtils.newCopyTask(null),
+              "Copying the results of the query", "COPYING");
+          return;
         } else {
           message = bigqueryUtils.getJobErrorMessage();
         }
@@ -72,10 +108,58 @@ public class TaskServlet extends HttpServlet {
       } else {
         message = "Encountered an exception (" + ex.getStatusCode() + "): " + ex.getMessage();
         log.severe(message);
+        if (STEP_COPY.equals(step)
+            && getRetryCount(request) < BigqueryUtils.COPY_TASK_RETRY_LIMIT) {
+          // Fail the task so that the queue retries it from the same checkpoint; the last attempt
+          // reports the failure instead.
+          throw ex;
+        }
       }
     }
 
     // Update the datastore with the new message and status.
     datastoreUtils.putUserInformation(message, status);
   }
+
+  /** Returns how many times the task queue has already retried the current task. */
+  private static int getRetryCount(HttpServletRequest request) {
+    String retryCount = request.getHeader("X-AppEngine-TaskRetryCount");
+    return retryCount == null ? 0 : Integer.parseInt(retryCount);
+  }
+
+  /**
+   * Copies up to {@link #PAGES_PER_TASK} pages of results into the pending generation, starting at
+   * the given page token. If pages remain, the checkpoint is advanced and a task is enqueued to
+   * continue from it, in the same transaction; otherwise the pending generation is committed.
+   *
+   * @return whether the pending generation was committed by this task
+   */
+  private boolean copyPages(BigqueryUtils bigqueryUtils, DatastoreUtils datastoreUtils,
+      String jobId, String pageToken) throws SampleDashboardException {
+    String fromPageToken = pageToken;
+    List<TableFieldSchema> fields = bigqueryUtils.getSchemaFieldNames();
+    long rowsCopied = datastoreUtils.getRowsCopied();
+
+    for (int page = 0; page < PAGES_PER_TASK; page++) {
+      TableDataList tableDataList = bigqueryUtils.getTableDataPage(pageToken, ROWS_PER_PAGE);
+      List<TableRow> rows = tableDataList.getRows();
+      if (rows != null) {
+        datastoreUtils.copyQueryResultsToDatastore(fields, rows, rowsCopied);
+        rowsCopied += rows.size();
+      }
+
+      pageToken = tableDataList.getPageToken();
+      if (pageToken == null || rows == null || rows.isEmpty()) {
+        return datastoreUtils.commitPendingGeneration(jobId, fromPageToken,
+            "Here are your results!", bigqueryUtils.getJobStatus());
+      }
+    }
+
+    if (!datastoreUtils.checkpointPendingGeneration(jobId, fromPageToken, pageToken, rowsCopied,
+        bigqueryUtils.newCopyTask(pageToken),
+        "Copying the results of the query (" + rowsCopied + " rows so far)", "COPYING")) {
+      log.info("Checkpoint of job " + jobId + " moved on while copying; dropping this task");
+    }
+    return false;
+  }
 }
@@ -14,17 +14,16 @@
 
 package com.google.api.services.samples.calendar.android;
 
-import com.google.api.client.googleapis.batch.BatchRequest;
-import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
-import com.google.api.client.googleapis.json.GoogleJsonError;
-import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.calendar.CalendarRequest;
 import com.google.api.services.calendar.model.Calendar;
+import com.google.api.services.samples.calendar.android.CalendarBatchExecutor.Outcome;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Asynchronously insert a new calendar.
+ * Asynchronously insert new calendars, using {@link CalendarBatchExecutor}.
  * 
  * @author Yaniv Inbar
  */
@@ -39,21 +38,25 @@ class AsyncBatchInsertCalendars extends CalendarAsyncTask {
 
   @Override
   protected void doInBackground() throws IOException {
-    BatchRequest batch = client.batch();
+    List<CalendarRequest<Calendar>> requests = new ArrayList<CalendarRequest<Calendar>>();
     for (Calendar calendar : calendars) {
-      client.calendars().insert(calendar).setFields(CalendarInfo.FIELDS)
-          .queue(batch, new JsonBatchCallback<Calendar>() {
-
-            public void onSuccess(Calendar calendar, HttpHeaders headers) {
-              model.add(calendar);
-            }
-
-            @Override
-            public void onFailure(GoogleJsonError err, HttpHeaders headers) throws IOException {
-              Utils.logAndShowError(activity, CalendarSampleActivity.TAG, err.getMessage());
-            }
-          });
+      requests.add(client.calendars().insert(calendar).setFields(CalendarInfo.FIELDS));
+    }
+    int failures = 0;
+    String lastError = null;
+    // inserts are not idempotent: retrying one that was applied would add a duplicate calendar
+    CalendarBatchExecutor batchExecutor = new CalendarBatchExecutor(client, false);
+    for (Outcome<Calendar> outcome : batchExecutor.execute(requests)) {
+      if (outcome.succeeded()) {
+        model.add(outcome.result);
+      } else {
+        failures++;
+        lastError = outcome.error.getMessage();
+      }
+    }
+    if (failures > 0) {
+      Utils.logAndShowError(activity, CalendarSampleActivity.TAG,
+          failures + " of " + calendars.size() + " calendars were not added: " + lastError);
     }
-    batch.execute();
   }
 }
@@ -14,13 +14,24 @@
 
 package com.google.api.services.samples.calendar.android;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.CalendarListEntry;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Asynchronously load the calendars.
  * 
+ * <p>
+ * The first load requests the whole calendar list; later loads pass the sync token it returned and
+ * only receive the calendars that were added, changed or deleted since. The token and the calendars
+ * are saved in {@link CalendarSyncState}, so this also holds across launches. A token the server no
+ * longer accepts (410 Gone) triggers a full load.
+ * </p>
+ * 
  * @author Yaniv Inbar
  */
 class AsyncLoadCalendars extends CalendarAsyncTask {
@@ -31,11 +42,67 @@ class AsyncLoadCalendars extends CalendarAsyncTask {
 
   @Override
   protected void doInBackground() throws IOException {
-    CalendarList feed = client.calendarList().list().setFields(CalendarInfo.FEED_FIELDS).execute();
-    model.reset(feed.getItems());
+    String accountName = activity.credential.getSelectedAccountName();
+    String syncToken = activity.syncState.getSyncToken(accountName);
+    if (syncToken != null) {
+      try {
+        loadChanges(accountName, syncToken);
+        return;
+      } catch (GoogleJsonResponseException e) {
+        if (e.getStatusCode() != 410) {
+          throw e;
+        }
+        // the sync token expired, so start over with a full load
+        activity.syncState.clear();
+      }
+    }
+    loadAll(accountName);
+  }
+
+  /** Applies the changes since the given sync token to the model, one page at a time. */
+  private void loadChanges(String accountName, String syncToken) throws IOException {
+    String pageToken = null;
+    CalendarList feed;
+    do {
+      feed = client.calendarList().list().setSyncToken(syncToken).setPageToken(pageToken)
+          .setFields(CalendarInfo.SYNC_FEED_FIELDS).execute();
+      if (feed.getItems() != null) {
+        model.applyChanges(feed.getItems());
+      }
+      pageToken = feed.getNextPageToken();
+    } while (pageToken != null);
+    activity.syncState.save(accountName, feed.getNextSyncToken(), model);
+  }
+
+  /** Replaces the model with all pages of the calendar list. */
+  private void loadAll(String accountName) throws IOException {
+    List<CalendarListEntry> calendars = new ArrayList<CalendarListEntry>();
+    String pageToken = null;
+    CalendarList feed;
+    do {
+      feed = client.calendarList().list().setPageToken(pageToken)
+          .setFields(CalendarInfo.SYNC_FEED_FIELDS).execute();
+      if (feed.getItems() != null) {
+        calendars.addAll(feed.getItems());
+      }
+      pageToken = feed.getNextPageToken();
+    } while (pageToken != null);
+    model.reset(calendars);
+    activity.syncState.save(accountName, feed.getNextSyncToken(), model);
+  }
+
+  @Override
+  int getConcurrencyLimit() {
+    return 1;
+  }
+
+  /** Loads of the same activity have the same effect, so one in flight is enough. */
+  @Override
+  String getDeduplicationKey() {
+    return "load";
   }
 
   static void run(CalendarSampleActivity calendarSample) {
-    new AsyncLoadCalendars(calendarSample).execute();
+    calendarSample.taskExecutor.execute(new AsyncLoadCalendars(calendarSample));
   }
 }
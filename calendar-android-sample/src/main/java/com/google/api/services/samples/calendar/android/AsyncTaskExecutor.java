@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.calendar.android;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the asynchronous tasks of an activity on a thread pool shared by the whole application,
+ * so that independent API calls overlap instead of queueing behind each other as they do with
+ * {@link android.os.AsyncTask#execute}.
+ * 
+ * <p>
+ * At most {@link CalendarAsyncTask#getConcurrencyLimit()} tasks of the same class run at the same
+ * time. A task with the same {@link CalendarAsyncTask#getDeduplicationKey() deduplication key} as a
+ * task of the activity that is still in flight is not executed at all. The activity cancels its
+ * tasks in flight with {@link #cancelAll()} when it is destroyed.
+ * </p>
+ * 
+ * <p>
+ * Must only be used from the main thread.
+ * </p>
+ */
+class AsyncTaskExecutor {
+
+  /** Number of threads of the shared pool. */
+  private static final int POOL_SIZE = 4;
+
+  private static final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+      POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+  static {
+    pool.allowCoreThreadTimeOut(true);
+  }
+
+  /** Executor of each task class, which enforces the class's concurrency limit. */
+  private static final Map<Class<?>, LimitedExecutor> executors =
+      new HashMap<Class<?>, LimitedExecutor>();
+
+  /** Tasks of the activity that were executed and have not finished yet. */
+  private final Set<CalendarAsyncTask> tasks = new LinkedHashSet<CalendarAsyncTask>();
+
+  /**
+   * Executes the given task, unless a task with the same deduplication key is still in flight.
+   * 
+   * @return whether the task was executed
+   */
+  boolean execute(CalendarAsyncTask task) {
+    String key = task.getDeduplicationKey();
+    if (key != null) {
+      for (CalendarAsyncTask inFlight : tasks) {
+        if (key.equals(inFlight.getDeduplicationKey())) {
+          return false;
+        }
+      }
+    }
+    LimitedExecutor executor = executors.get(task.getClass());
+    if (executor == null) {
+      executor = new LimitedExecutor(task.getConcurrencyLimit());
+      executors.put(task.getClass(), executor);
+    }
+    tasks.add(task);
+    task.executeOnExecutor(executor);
+    return true;
+  }
+
+  /**
+   * Returns an executor that runs at most the given number of its tasks at a time on the shared
+   * pool. Unlike the other methods, it may be used from any thread.
+   */
+  static Executor newLimitedExecutor(int limit) {
+    return new LimitedExecutor(limit);
+  }
+
+  /** Called by a task when it has finished or was cancelled. */
+  void finished(CalendarAsyncTask task) {
+    tasks.remove(task);
+  }
+
+  /** Cancels all tasks of the activity that are still in flight, interrupting running ones. */
+  void cancelAll() {
+    for (CalendarAsyncTask task : new ArrayList<CalendarAsyncTask>(tasks)) {
+      task.cancel(true);
+    }
+  }
+
+  /** Executor that runs at most a given number of its tasks on the shared pool at a time. */
+  private static final class LimitedExecutor implements Executor {
+
+    private final int limit;
+    private final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+    private int running;
+
+    LimitedExecutor(int limit) {
+      this.limit = limit;
+    }
+
+    public synchronized void execute(final Runnable command) {
+      queue.offer(new Runnable() {
+        public void run() {
+          try {
+            command.run();
+          } finally {
+            scheduleNext(true);
+          }
+        }
+      });
+      scheduleNext(false);
+    }
+
+    private synchronized void scheduleNext(boolean finished) {
+      if (finished) {
+        running--;
+      }
+      while (running < limit && !queue.isEmpty()) {
+        running++;
+        pool.execute(queue.poll());
+      }
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.calendar.android;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonError.ErrorInfo;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.CalendarRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Executes any number of Calendar API requests, such as inserts, patches or deletes, as batch
+ * requests.
+ * 
+ * <p>
+ * The requests are split into batches of at most {@link #MAX_BATCH_SIZE} requests, of which up to
+ * {@link #MAX_CONCURRENT_BATCHES} are executed at the same time on the thread pool of
+ * {@link AsyncTaskExecutor}. Requests that fail because of rate limiting are retried in further
+ * batches with exponential backoff, up to {@link #MAX_ATTEMPTS} times in total. The caller gets the
+ * outcome of each request.
+ * </p>
+ * 
+ * <p>
+ * Requests that failed with a transient server error, or whose batch failed as a whole, may still
+ * have been applied. They are only retried if the requests were declared idempotent, such as
+ * patches or deletes. Otherwise, such as for inserts, their outcome is reported as an error, so
+ * that a retry does not apply them twice.
+ * </p>
+ */
+class CalendarBatchExecutor {
+
+  /** Maximum number of requests the Calendar API accepts in a single batch request. */
+  static final int MAX_BATCH_SIZE = 50;
+
+  /** Maximum number of batch requests executed at the same time. */
+  static final int MAX_CONCURRENT_BATCHES = 3;
+
+  /** Maximum number of times a request is sent. */
+  static final int MAX_ATTEMPTS = 5;
+
+  private static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+  private static final Executor executor =
+      AsyncTaskExecutor.newLimitedExecutor(MAX_CONCURRENT_BATCHES);
+
+  private static final Random random = new Random();
+
+  /** Outcome of a single request: either its result or the error returned for it. */
+  static final class Outcome<T> {
+    final T result;
+    final GoogleJsonError error;
+
+    Outcome(T result, GoogleJsonError error) {
+      this.result = result;
+      this.error = error;
+    }
+
+    boolean succeeded() {
+      return error == null;
+    }
+  }
+
+  private final Calendar client;
+
+  private final boolean idempotent;
+
+  /**
+   * @param client Calendar client
+   * @param idempotent whether applying each request more than once has the same effect as applying
+   *        it once, so that it may be retried after a server error or a failed batch
+   */
+  CalendarBatchExecutor(Calendar client, boolean idempotent) {
+    this.client = client;
+    this.idempotent = idempotent;
+  }
+
+  /**
+   * Executes the given requests and returns their outcomes, in the same order.
+   * 
+   * @throws IOException if a batch request still failed as a whole after {@link #MAX_ATTEMPTS}
+   *         attempts
+   */
+  <T> List<Outcome<T>> execute(List<? extends CalendarRequest<T>> requests) throws IOException {
+    List<Outcome<T>> outcomes = new ArrayList<Outcome<T>>(
+        Collections.<Outcome<T>>nCopies(requests.size(), null));
+    List<Integer> pending = new ArrayList<Integer>();
+    for (int i = 0; i < requests.size(); i++) {
+      pending.add(i);
+    }
+    long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    for (int attempt = 1; !pending.isEmpty(); attempt++) {
+      if (attempt > 1) {
+        sleep(backoffMillis + random.nextInt((int) backoffMillis));
+        backoffMillis *= 2;
+      }
+      List<Integer> retry = Collections.synchronizedList(new ArrayList<Integer>());
+      List<FutureTask<Void>> futures = new ArrayList<FutureTask<Void>>();
+      for (int start = 0; start < pending.size(); start += MAX_BATCH_SIZE) {
+        List<Integer> indexes =
+            pending.subList(start, Math.min(start + MAX_BATCH_SIZE, pending.size()));
+        FutureTask<Void> future = new FutureTask<Void>(
+            newBatch(requests, indexes, outcomes, retry, attempt < MAX_ATTEMPTS));
+        executor.execute(future);
+        futures.add(future);
+      }
+      for (FutureTask<Void> future : futures) {
+        // the calling task runs on the same pool, so run batches that are still queued right here
+        // rather than waiting for a thread that it may itself be occupying
+        future.run();
+        await(future);
+      }
+      Collections.sort(retry);
+      pending = retry;
+    }
+    return outcomes;
+  }
+
+  /**
+   * Returns a task that executes the requests with the given indexes as one batch request. Their
+   * outcomes are stored at the same indexes, unless they should be retried.
+   */
+  private <T> Callable<Void> newBatch(final List<? extends CalendarRequest<T>> requests,
+      final List<Integer> indexes, final List<Outcome<T>> outcomes, final List<Integer> retry,
+      final boolean canRetry) {
+    return new Callable<Void>() {
+      public Void call() throws IOException {
+        BatchRequest batch = client.batch();
+        for (final int index : indexes) {
+          requests.get(index).queue(batch, new JsonBatchCallback<T>() {
+
+            @Override
+            public void onSuccess(T result, HttpHeaders headers) {
+              setOutcome(outcomes, index, new Outcome<T>(result, null));
+            }
+
+            @Override
+            public void onFailure(GoogleJsonError error, HttpHeaders headers) {
+              if (canRetry && isRetryable(error, idempotent)) {
+                retry.add(index);
+              } else {
+                setOutcome(outcomes, index, new Outcome<T>(null, error));
+              }
+            }
+          });
+        }
+        try {
+          batch.execute();
+        } catch (IOException e) {
+          if (idempotent && !canRetry) {
+            throw e;
+          }
+          GoogleJsonError unknown = null;
+          if (!idempotent) {
+            unknown = new GoogleJsonError();
+            unknown.setMessage("The request may or may not have been applied: " + e.getMessage());
+          }
+          // retry or report the requests of the batch that have no outcome yet
+          for (int index : indexes) {
+            if (getOutcome(outcomes, index) == null && !retry.contains(index)) {
+              if (unknown == null) {
+                retry.add(index);
+              } else {
+                setOutcome(outcomes, index, new Outcome<T>(null, unknown));
+              }
+            }
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Returns whether the request failed because of rate limiting, or because of a transient server
+   * error and it is idempotent.
+   */
+  static boolean isRetryable(GoogleJsonError error, boolean idempotent) {
+    int code = error.getCode();
+    if (code == 429 || (idempotent && (code == 500 || code == 503))) {
+      return true;
+    }
+    if (code == 403 && error.getErrors() != null) {
+      for (ErrorInfo errorInfo : error.getErrors()) {
+        if ("rateLimitExceeded".equals(errorInfo.getReason())
+            || "userRateLimitExceeded".equals(errorInfo.getReason())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static <T> void setOutcome(List<Outcome<T>> outcomes, int index, Outcome<T> outcome) {
+    synchronized (outcomes) {
+      outcomes.set(index, outcome);
+    }
+  }
+
+  private static <T> Outcome<T> getOutcome(List<Outcome<T>> outcomes, int index) {
+    synchronized (outcomes) {
+      return outcomes.get(index);
+    }
+  }
+
+  private static void await(FutureTask<Void> future) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
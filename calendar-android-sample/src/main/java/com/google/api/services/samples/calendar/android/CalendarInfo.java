@@ -19,17 +19,21 @@ import com.google.api.services.calendar.model.Calendar;
 import com.google.api.services.calendar.model.CalendarListEntry;
 
 /**
- * Class that holds information about a calendar.
+ * Immutable class that holds information about a calendar.
  * 
  * @author Yaniv Inbar
  */
-class CalendarInfo implements Comparable<CalendarInfo>, Cloneable {
+class CalendarInfo implements Comparable<CalendarInfo> {
 
   static final String FIELDS = "id,summary";
   static final String FEED_FIELDS = "items(" + FIELDS + ")";
 
-  String id;
-  String summary;
+  /** Fields of a calendar list page, including the tokens and deletions used to sync changes. */
+  static final String SYNC_FEED_FIELDS =
+      "nextPageToken,nextSyncToken,items(" + FIELDS + ",deleted)";
+
+  final String id;
+  final String summary;
 
   CalendarInfo(String id, String summary) {
     this.id = id;
@@ -37,11 +41,11 @@ class CalendarInfo implements Comparable<CalendarInfo>, Cloneable {
   }
 
   CalendarInfo(Calendar calendar) {
-    update(calendar);
+    this(calendar.getId(), calendar.getSummary());
   }
 
   CalendarInfo(CalendarListEntry calendar) {
-    update(calendar);
+    this(calendar.getId(), calendar.getSummary());
   }
 
   @Override
@@ -53,24 +57,4 @@ class CalendarInfo implements Comparable<CalendarInfo>, Cloneable {
   public int compareTo(CalendarInfo other) {
     return summary.compareTo(other.summary);
   }
-
-  @Override
-  public CalendarInfo clone() {
-    try {
-      return (CalendarInfo) super.clone();
-    } catch (CloneNotSupportedException exception) {
-      // should not happen
-      throw new RuntimeException(exception);
-    }
-  }
-
-  void update(Calendar calendar) {
-    id = calendar.getId();
-    summary = calendar.getSummary();
-  }
-
-  void update(CalendarListEntry calendar) {
-    id = calendar.getId();
-    summary = calendar.getSummary();
-  }
 }
@@ -17,8 +17,7 @@ package com.google.api.services.samples.calendar.android;
 import com.google.api.services.calendar.model.Calendar;
 import com.google.api.services.calendar.model.CalendarListEntry;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,21 +25,35 @@ import java.util.Map;
 /**
  * Thread-safe model for the Google calendars.
  * 
+ * <p>
+ * Changes are made under a lock, and each change publishes a new sorted snapshot of the
+ * calendars through a volatile field, so that {@link #toSortedArray()} needs neither a lock nor an
+ * allocation.
+ * A single change costs one copy of the snapshot; {@link #reset} and {@link #applyChanges} sort
+ * once for all their entries.
+ * </p>
+ * 
  * @author Yaniv Inbar
  */
 class CalendarModel {
 
+  private static final CalendarInfo[] EMPTY = new CalendarInfo[0];
+
   private final Map<String, CalendarInfo> calendars = new HashMap<String, CalendarInfo>();
 
+  /** Sorted snapshot of {@link #calendars}, never modified once published. */
+  private volatile CalendarInfo[] sortedCalendars = EMPTY;
+
   int size() {
-    synchronized (calendars) {
-      return calendars.size();
-    }
+    return sortedCalendars.length;
   }
 
   void remove(String id) {
     synchronized (calendars) {
-      calendars.remove(id);
+      CalendarInfo removed = calendars.remove(id);
+      if (removed != null) {
+        publish(removed, null);
+      }
     }
   }
 
@@ -51,44 +64,83 @@ class CalendarModel {
   }
 
   void add(Calendar calendarToAdd) {
-    synchronized (calendars) {
-      CalendarInfo found = get(calendarToAdd.getId());
-      if (found == null) {
-        calendars.put(calendarToAdd.getId(), new CalendarInfo(calendarToAdd));
-      } else {
-        found.update(calendarToAdd);
-      }
-    }
+    put(new CalendarInfo(calendarToAdd));
   }
 
   void add(CalendarListEntry calendarToAdd) {
+    put(new CalendarInfo(calendarToAdd));
+  }
+
+  void reset(List<CalendarListEntry> calendarsToAdd) {
     synchronized (calendars) {
-      CalendarInfo found = get(calendarToAdd.getId());
-      if (found == null) {
+      calendars.clear();
+      for (CalendarListEntry calendarToAdd : calendarsToAdd) {
         calendars.put(calendarToAdd.getId(), new CalendarInfo(calendarToAdd));
-      } else {
-        found.update(calendarToAdd);
       }
+      publishAll();
     }
   }
 
-  void reset(List<CalendarListEntry> calendarsToAdd) {
+  /**
+   * Applies the entries returned by an incremental sync: deleted entries are removed, the others
+   * are added or updated.
+   */
+  void applyChanges(List<CalendarListEntry> changes) {
     synchronized (calendars) {
-      calendars.clear();
-      for (CalendarListEntry calendarToAdd : calendarsToAdd) {
-        add(calendarToAdd);
+      for (CalendarListEntry change : changes) {
+        if (Boolean.TRUE.equals(change.getDeleted())) {
+          calendars.remove(change.getId());
+        } else {
+          calendars.put(change.getId(), new CalendarInfo(change));
+        }
       }
+      publishAll();
     }
   }
 
+  /**
+   * Returns the calendars sorted by summary. The returned array is shared and must not be
+   * modified; it is replaced by a new one on the next change.
+   */
   public CalendarInfo[] toSortedArray() {
+    return sortedCalendars;
+  }
+
+  private void put(CalendarInfo calendar) {
     synchronized (calendars) {
-      List<CalendarInfo> result = new ArrayList<CalendarInfo>();
-      for (CalendarInfo calendar : calendars.values()) {
-        result.add(calendar.clone());
+      publish(calendars.put(calendar.id, calendar), calendar);
+    }
+  }
+
+  /**
+   * Publishes a copy of the snapshot without {@code removed} and with {@code added} inserted at its
+   * sorted position. Either may be {@code null}. Must be called while holding the lock.
+   */
+  private void publish(CalendarInfo removed, CalendarInfo added) {
+    CalendarInfo[] current = sortedCalendars;
+    int length = current.length + (removed == null ? 0 : -1) + (added == null ? 0 : 1);
+    CalendarInfo[] result = new CalendarInfo[length];
+    int j = 0;
+    for (CalendarInfo calendar : current) {
+      if (calendar == removed) {
+        continue;
+      }
+      if (added != null && added.compareTo(calendar) < 0) {
+        result[j++] = added;
+        added = null;
       }
-      Collections.sort(result);
-      return result.toArray(new CalendarInfo[0]);
+      result[j++] = calendar;
     }
+    if (added != null) {
+      result[j] = added;
+    }
+    sortedCalendars = result;
+  }
+
+  /** Publishes a newly sorted snapshot of all calendars. Must be called while holding the lock. */
+  private void publishAll() {
+    CalendarInfo[] result = calendars.values().toArray(new CalendarInfo[calendars.size()]);
+    Arrays.sort(result);
+    sortedCalendars = result;
   }
 }
@@ -105,12 +105,19 @@ adb shell setprop log.tag.HttpTransport DEBUG
 
   CalendarModel model = new CalendarModel();
 
+  CalendarSyncState syncState;
+
   ArrayAdapter<CalendarInfo> adapter;
 
+  /** Snapshot of the model shown by {@link #adapter}. */
+  private CalendarInfo[] shownCalendars;
+
   com.google.api.services.calendar.Calendar client;
 
   int numAsyncTasks;
 
+  final AsyncTaskExecutor taskExecutor = new AsyncTaskExecutor();
+
   private ListView listView;
 
   @Override
@@ -131,6 +138,11 @@ adb shell setprop log.tag.HttpTransport DEBUG
     client = new com.google.api.services.calendar.Calendar.Builder(
         transport, jsonFactory, credential).setApplicationName("Google-CalendarAndroidSample/1.0")
         .build();
+    // show the calendars saved by the last load right away; the next load only fetches changes
+    syncState = new CalendarSyncState(this, jsonFactory);
+    if (syncState.load(credential.getSelectedAccountName(), model)) {
+      refreshView();
+    }
   }
 
   void showGooglePlayServicesAvailabilityErrorDialog(final int connectionStatusCode) {
@@ -144,8 +156,14 @@ adb shell setprop log.tag.HttpTransport DEBUG
   }
 
   void refreshView() {
+    CalendarInfo[] calendars = model.toSortedArray();
+    if (adapter != null && calendars == shownCalendars) {
+      // the model has not changed since it was last shown
+      return;
+    }
+    shownCalendars = calendars;
     adapter = new ArrayAdapter<CalendarInfo>(
-        this, android.R.layout.simple_list_item_1, model.toSortedArray()) {
+        this, android.R.layout.simple_list_item_1, calendars) {
 
         @Override
       public View getView(int position, View convertView, ViewGroup parent) {
@@ -159,6 +177,12 @@ adb shell setprop log.tag.HttpTransport DEBUG
     listView.setAdapter(adapter);
   }
 
+  @Override
+  protected void onDestroy() {
+    taskExecutor.cancelAll();
+    super.onDestroy();
+  }
+
   @Override
   protected void onResume() {
     super.onResume();
@@ -204,10 +228,10 @@ adb shell setprop log.tag.HttpTransport DEBUG
           calendar.setSummary(data.getStringExtra("summary"));
           String id = data.getStringExtra("id");
           if (id == null) {
-            new AsyncInsertCalendar(this, calendar).execute();
+            taskExecutor.execute(new AsyncInsertCalendar(this, calendar));
           } else {
             calendar.setId(id);
-            new AsyncUpdateCalendar(this, id, calendar).execute();
+            taskExecutor.execute(new AsyncUpdateCalendar(this, id, calendar));
           }
         }
         break;
@@ -259,7 +283,8 @@ adb shell setprop log.tag.HttpTransport DEBUG
               .setPositiveButton(R.string.yes, new DialogInterface.OnClickListener() {
 
                 public void onClick(DialogInterface dialog, int which) {
-                  new AsyncDeleteCalendar(CalendarSampleActivity.this, calendarInfo).execute();
+                  taskExecutor.execute(
+                      new AsyncDeleteCalendar(CalendarSampleActivity.this, calendarInfo));
                 }
               })
               .setNegativeButton(R.string.no, null)
@@ -273,7 +298,7 @@ adb shell setprop log.tag.HttpTransport DEBUG
             cal.setSummary(calendarInfo.summary + " [" + (i + 1) + "]");
             calendars.add(cal);
           }
-          new AsyncBatchInsertCalendars(this, calendars).execute();
+          taskExecutor.execute(new AsyncBatchInsertCalendars(this, calendars));
           return true;
       }
     }
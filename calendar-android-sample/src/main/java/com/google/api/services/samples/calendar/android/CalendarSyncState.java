@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.calendar.android;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.CalendarListEntry;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the calendar list of the selected account together with the sync token it is current
+ * as of, so that the next launch only needs to request the changes since then.
+ */
+class CalendarSyncState {
+
+  private static final String PREF_SYNC_ACCOUNT_NAME = "syncAccountName";
+  private static final String PREF_SYNC_TOKEN = "syncToken";
+  private static final String CALENDARS_FILE = "calendars.json";
+
+  private final Activity activity;
+  private final JsonFactory jsonFactory;
+
+  CalendarSyncState(Activity activity, JsonFactory jsonFactory) {
+    this.activity = activity;
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Returns the sync token of the calendars saved for the given account, or {@code null} if none
+   * were saved.
+   */
+  String getSyncToken(String accountName) {
+    SharedPreferences settings = activity.getPreferences(Context.MODE_PRIVATE);
+    if (accountName == null
+        || !accountName.equals(settings.getString(PREF_SYNC_ACCOUNT_NAME, null))) {
+      return null;
+    }
+    return settings.getString(PREF_SYNC_TOKEN, null);
+  }
+
+  /**
+   * Loads the calendars saved for the given account into the model.
+   * 
+   * @return whether calendars were saved for the account
+   */
+  boolean load(String accountName, CalendarModel model) {
+    if (getSyncToken(accountName) == null) {
+      return false;
+    }
+    try {
+      InputStream in = activity.openFileInput(CALENDARS_FILE);
+      try {
+        CalendarList saved = jsonFactory.fromInputStream(in, CalendarList.class);
+        List<CalendarListEntry> items = saved.getItems();
+        model.reset(items == null ? new ArrayList<CalendarListEntry>() : items);
+        return true;
+      } finally {
+        in.close();
+      }
+    } catch (FileNotFoundException e) {
+      return false;
+    } catch (IOException e) {
+      Log.w(CalendarSampleActivity.TAG, "Unable to load saved calendars", e);
+      return false;
+    }
+  }
+
+  /**
+   * Saves the calendars of the model for the given account, as of the given sync token.
+   */
+  void save(String accountName, String syncToken, CalendarModel model) {
+    List<CalendarListEntry> items = new ArrayList<CalendarListEntry>();
+    for (CalendarInfo calendarInfo : model.toSortedArray()) {
+      items.add(new CalendarListEntry().setId(calendarInfo.id).setSummary(calendarInfo.summary));
+    }
+    try {
+      OutputStream out = activity.openFileOutput(CALENDARS_FILE, Context.MODE_PRIVATE);
+      try {
+        out.write(jsonFactory.toByteArray(new CalendarList().setItems(items)));
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      Log.w(CalendarSampleActivity.TAG, "Unable to save calendars", e);
+      clear();
+      return;
+    }
+    activity.getPreferences(Context.MODE_PRIVATE).edit()
+        .putString(PREF_SYNC_ACCOUNT_NAME, accountName)
+        .putString(PREF_SYNC_TOKEN, syncToken)
+        .commit();
+  }
+
+  /** Forgets the saved sync token, so that the next load is a full sync. */
+  void clear() {
+    activity.getPreferences(Context.MODE_PRIVATE).edit()
+        .remove(PREF_SYNC_ACCOUNT_NAME)
+        .remove(PREF_SYNC_TOKEN)
+        .commit();
+  }
+}
@@ -20,9 +20,11 @@ import com.google.gwt.core.client.EntryPoint;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.ui.CheckBox;
 import com.google.gwt.user.client.ui.FlexTable;
 import com.google.gwt.user.client.ui.RootPanel;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -57,6 +59,8 @@ public class CalendarGwtSample implements EntryPoint {
       public void onSuccess(List<GwtCalendar> result) {
         calendars = result;
         calendarsFrame.addButton.setEnabled(true);
+        calendarsFrame.deleteSelectedButton.setEnabled(true);
+        calendarsFrame.renameSelectedButton.setEnabled(true);
         refreshTable();
       }
     });
@@ -65,15 +69,28 @@ public class CalendarGwtSample implements EntryPoint {
   void refreshTable() {
     FlexTable calendarsTable = calendarsFrame.calendarsTable;
     calendarsTable.removeAllRows();
-    calendarsTable.setText(0, 1, "Calendar Title");
-    calendarsTable.getCellFormatter().addStyleName(0, 1, "methodsHeaderRow");
+    calendarsTable.setText(0, 2, "Calendar Title");
+    calendarsTable.getCellFormatter().addStyleName(0, 2, "methodsHeaderRow");
     for (int i = 0; i < calendars.size(); i++) {
       GwtCalendar calendar = calendars.get(i);
-      calendarsTable.setWidget(i + 1, 0, new CalendarButtons(this, calendar, i));
-      calendarsTable.setText(i + 1, 1, calendar.title);
+      calendarsTable.setWidget(i + 1, 0, new CheckBox());
+      calendarsTable.setWidget(i + 1, 1, new CalendarButtons(this, calendar, i));
+      calendarsTable.setText(i + 1, 2, calendar.title);
     }
   }
 
+  /** Returns the calendars whose check box is selected in the table. */
+  List<GwtCalendar> getSelectedCalendars() {
+    FlexTable calendarsTable = calendarsFrame.calendarsTable;
+    List<GwtCalendar> selected = new ArrayList<GwtCalendar>();
+    for (int i = 0; i < calendars.size(); i++) {
+      if (((CheckBox) calendarsTable.getWidget(i + 1, 0)).getValue()) {
+        selected.add(calendars.get(i));
+      }
+    }
+    return selected;
+  }
+
   static void handleFailure(Throwable caught) {
     if (caught instanceof AuthenticationException) {
       Window.Location.reload();
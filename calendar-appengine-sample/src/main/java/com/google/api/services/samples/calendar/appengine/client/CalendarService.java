@@ -15,6 +15,7 @@
 package com.google.api.services.samples.calendar.appengine.client;
 
 import com.google.api.services.samples.calendar.appengine.shared.GwtCalendar;
+import com.google.api.services.samples.calendar.appengine.shared.GwtCalendarResult;
 import com.google.gwt.user.client.rpc.RemoteService;
 import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
 
@@ -36,4 +37,10 @@ public interface CalendarService extends RemoteService {
   GwtCalendar insert(GwtCalendar calendar) throws IOException;
 
   GwtCalendar update(GwtCalendar updated) throws IOException;
+
+  /** Deletes the given calendars and returns the result of each, in the same order. */
+  List<GwtCalendarResult> deleteAll(List<GwtCalendar> calendars) throws IOException;
+
+  /** Updates the given calendars and returns the result of each, in the same order. */
+  List<GwtCalendarResult> updateAll(List<GwtCalendar> updated) throws IOException;
 }
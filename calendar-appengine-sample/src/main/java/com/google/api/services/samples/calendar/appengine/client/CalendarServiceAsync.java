@@ -15,6 +15,7 @@
 package com.google.api.services.samples.calendar.appengine.client;
 
 import com.google.api.services.samples.calendar.appengine.shared.GwtCalendar;
+import com.google.api.services.samples.calendar.appengine.shared.GwtCalendarResult;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
 import java.util.List;
@@ -32,4 +33,8 @@ public interface CalendarServiceAsync {
   void insert(GwtCalendar calendar, AsyncCallback<GwtCalendar> callback);
 
   void update(GwtCalendar updated, AsyncCallback<GwtCalendar> callback);
+
+  void deleteAll(List<GwtCalendar> calendars, AsyncCallback<List<GwtCalendarResult>> callback);
+
+  void updateAll(List<GwtCalendar> updated, AsyncCallback<List<GwtCalendarResult>> callback);
 }
@@ -15,11 +15,13 @@
 package com.google.api.services.samples.calendar.appengine.client;
 
 import com.google.api.services.samples.calendar.appengine.shared.GwtCalendar;
+import com.google.api.services.samples.calendar.appengine.shared.GwtCalendarResult;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.uibinder.client.UiBinder;
 import com.google.gwt.uibinder.client.UiField;
 import com.google.gwt.uibinder.client.UiHandler;
+import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.Composite;
@@ -27,6 +29,14 @@ import com.google.gwt.user.client.ui.FlexTable;
 import com.google.gwt.user.client.ui.TextBox;
 import com.google.gwt.user.client.ui.VerticalPanel;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Main calendars UI frame.
  * 
@@ -44,6 +54,12 @@ public class CalendarsFrame extends Composite {
   @UiField
   Button addButton;
 
+  @UiField
+  Button deleteSelectedButton;
+
+  @UiField
+  Button renameSelectedButton;
+
   @UiField
   FlexTable calendarsTable;
 
@@ -75,4 +91,92 @@ public class CalendarsFrame extends Composite {
       });
     }
   }
+
+  @UiHandler("deleteSelectedButton")
+  void handleDeleteSelected(ClickEvent e) {
+    List<GwtCalendar> selected = main.getSelectedCalendars();
+    if (selected.isEmpty() || !Window.confirm("Are you sure you want to permanently delete the "
+        + selected.size() + " selected calendars?")) {
+      return;
+    }
+    CalendarGwtSample.SERVICE.deleteAll(selected, new AsyncCallback<List<GwtCalendarResult>>() {
+
+      @Override
+      public void onFailure(Throwable caught) {
+        CalendarGwtSample.handleFailure(caught);
+      }
+
+      @Override
+      public void onSuccess(List<GwtCalendarResult> results) {
+        Set<String> deletedIds = new HashSet<String>();
+        StringBuilder errors = new StringBuilder();
+        for (GwtCalendarResult result : results) {
+          if (result.error == null) {
+            deletedIds.add(result.calendar.id);
+          } else {
+            errors.append(result.calendar.title).append(": ").append(result.error).append('\n');
+          }
+        }
+        for (Iterator<GwtCalendar> i = main.calendars.iterator(); i.hasNext();) {
+          if (deletedIds.contains(i.next().id)) {
+            i.remove();
+          }
+        }
+        main.refreshTable();
+        if (errors.length() != 0) {
+          Window.alert("ERROR: Some calendars were not deleted:\n" + errors);
+        }
+      }
+    });
+  }
+
+  @UiHandler("renameSelectedButton")
+  void handleRenameSelected(ClickEvent e) {
+    List<GwtCalendar> selected = main.getSelectedCalendars();
+    if (selected.isEmpty()) {
+      return;
+    }
+    String title = Window.prompt(
+        "New title for the " + selected.size() + " selected calendars:", selected.get(0).title);
+    if (title == null) {
+      return;
+    }
+    List<GwtCalendar> updated = new ArrayList<GwtCalendar>();
+    final Map<String, String> oldTitles = new HashMap<String, String>();
+    for (GwtCalendar calendar : selected) {
+      updated.add(new GwtCalendar(calendar.id, title));
+      oldTitles.put(calendar.id, calendar.title);
+    }
+    CalendarGwtSample.SERVICE.updateAll(updated, new AsyncCallback<List<GwtCalendarResult>>() {
+
+      @Override
+      public void onFailure(Throwable caught) {
+        CalendarGwtSample.handleFailure(caught);
+      }
+
+      @Override
+      public void onSuccess(List<GwtCalendarResult> results) {
+        Map<String, GwtCalendar> updatedById = new HashMap<String, GwtCalendar>();
+        StringBuilder errors = new StringBuilder();
+        for (GwtCalendarResult result : results) {
+          if (result.error == null) {
+            updatedById.put(result.calendar.id, result.calendar);
+          } else {
+            errors.append(oldTitles.get(result.calendar.id)).append(": ").append(result.error)
+                .append('\n');
+          }
+        }
+        for (int i = 0; i < main.calendars.size(); i++) {
+          GwtCalendar calendar = updatedById.get(main.calendars.get(i).id);
+          if (calendar != null) {
+            main.calendars.set(i, calendar);
+          }
+        }
+        main.refreshTable();
+        if (errors.length() != 0) {
+          Window.alert("ERROR: Some calendars were not renamed:\n" + errors);
+        }
+      }
+    });
+  }
 }
@@ -14,16 +14,25 @@
 
 package com.google.api.services.samples.calendar.appengine.server;
 
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.services.calendar.model.Calendar;
 import com.google.api.services.calendar.model.CalendarList;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.samples.calendar.appengine.client.CalendarService;
 import com.google.api.services.samples.calendar.appengine.shared.GwtCalendar;
+import com.google.api.services.samples.calendar.appengine.shared.GwtCalendarResult;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Calendar GWT RPC service implementation.
@@ -33,20 +42,45 @@ import java.util.List;
 @SuppressWarnings("serial")
 public class CalendarGwtRpcSample extends RemoteServiceServlet implements CalendarService {
 
+  /** Maximum number of requests the Calendar API accepts in a single batch request. */
+  private static final int MAX_BATCH_SIZE = 50;
+
+  /**
+   * Returns the user's calendars from {@link CalendarListCache}, revalidating them with the
+   * Calendar API once they are stale.
+   */
   @Override
   public List<GwtCalendar> getCalendars() throws IOException {
     try {
+      String userId = Utils.getUserId();
+      CalendarListCache.Entry cached = CalendarListCache.get(userId);
+      if (cached != null && cached.isFresh()) {
+        return cached.copyCalendars();
+      }
       com.google.api.services.calendar.Calendar client = Utils.loadCalendarClient();
       com.google.api.services.calendar.Calendar.CalendarList.List listRequest =
           client.calendarList().list();
-      listRequest.setFields("items(id,summary)");
-      CalendarList feed = listRequest.execute();
+      listRequest.setFields("etag,items(id,summary)");
+      if (cached != null && cached.etag != null) {
+        listRequest.getRequestHeaders().setIfNoneMatch(cached.etag);
+      }
+      CalendarList feed;
+      try {
+        feed = listRequest.execute();
+      } catch (HttpResponseException e) {
+        if (cached == null || e.getStatusCode() != HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+          throw e;
+        }
+        CalendarListCache.revalidated(userId, cached);
+        return cached.copyCalendars();
+      }
       ArrayList<GwtCalendar> result = new ArrayList<GwtCalendar>();
       if (feed.getItems() != null) {
         for (CalendarListEntry entry : feed.getItems()) {
           result.add(new GwtCalendar(entry.getId(), entry.getSummary()));
         }
       }
+      CalendarListCache.put(userId, cached, result, feed.getEtag());
       return result;
     } catch (IOException e) {
       throw Utils.wrappedIOException(e);
@@ -58,6 +92,7 @@ public class CalendarGwtRpcSample extends RemoteServiceServlet implements Calend
     try {
       com.google.api.services.calendar.Calendar client = Utils.loadCalendarClient();
       client.calendars().delete(calendar.id).execute();
+      CalendarListCache.removeCalendar(Utils.getUserId(), calendar.id);
     } catch (IOException e) {
       throw Utils.wrappedIOException(e);
     }
@@ -72,6 +107,7 @@ public class CalendarGwtRpcSample extends RemoteServiceServlet implements Calend
       GwtCalendar result = new GwtCalendar();
       result.title = responseEntry.getSummary();
       result.id = responseEntry.getId();
+      CalendarListCache.putCalendar(Utils.getUserId(), result);
       return result;
     } catch (IOException e) {
       throw Utils.wrappedIOException(e);
@@ -86,9 +122,119 @@ public class CalendarGwtRpcSample extends RemoteServiceServlet implements Calend
       entry.setSummary(updated.title);
       String id = updated.id;
       Calendar responseEntry = client.calendars().patch(id, entry).execute();
-      return new GwtCalendar(id, responseEntry.getSummary());
+      GwtCalendar result = new GwtCalendar(id, responseEntry.getSummary());
+      CalendarListCache.putCalendar(Utils.getUserId(), result);
+      return result;
+    } catch (IOException e) {
+      throw Utils.wrappedIOException(e);
+    }
+  }
+
+  @Override
+  public List<GwtCalendarResult> deleteAll(List<GwtCalendar> calendars) throws IOException {
+    final List<GwtCalendarResult> results = new ArrayList<GwtCalendarResult>();
+    boolean executed = false;
+    try {
+      com.google.api.services.calendar.Calendar client = Utils.loadCalendarClient();
+      BatchRequest batch = client.batch();
+      for (GwtCalendar calendar : calendars) {
+        final GwtCalendarResult result = new GwtCalendarResult(calendar);
+        results.add(result);
+        executeIfFull(batch);
+        client.calendars().delete(calendar.id).queue(batch, new JsonBatchCallback<Void>() {
+
+          @Override
+          public void onSuccess(Void response, HttpHeaders responseHeaders) {
+          }
+
+          @Override
+          public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+            result.error = e.getMessage();
+          }
+        });
+      }
+      if (batch.size() != 0) {
+        batch.execute();
+      }
+      executed = true;
+      return results;
     } catch (IOException e) {
       throw Utils.wrappedIOException(e);
+    } finally {
+      Map<String, GwtCalendar> changes = new LinkedHashMap<String, GwtCalendar>();
+      for (GwtCalendarResult result : results) {
+        if (result.error != null) {
+          // a failed delete may still have been applied
+          executed = false;
+        }
+        changes.put(result.calendar.id, null);
+      }
+      if (executed) {
+        CalendarListCache.applyChanges(Utils.getUserId(), changes);
+      } else {
+        CalendarListCache.invalidate(Utils.getUserId());
+      }
+    }
+  }
+
+  @Override
+  public List<GwtCalendarResult> updateAll(List<GwtCalendar> updated) throws IOException {
+    final List<GwtCalendarResult> results = new ArrayList<GwtCalendarResult>();
+    boolean executed = false;
+    try {
+      com.google.api.services.calendar.Calendar client = Utils.loadCalendarClient();
+      BatchRequest batch = client.batch();
+      for (final GwtCalendar calendar : updated) {
+        final GwtCalendarResult result = new GwtCalendarResult(calendar);
+        results.add(result);
+        executeIfFull(batch);
+        Calendar entry = new Calendar();
+        entry.setSummary(calendar.title);
+        client.calendars().patch(calendar.id, entry).queue(batch,
+            new JsonBatchCallback<Calendar>() {
+
+              @Override
+              public void onSuccess(Calendar responseEntry, HttpHeaders responseHeaders) {
+                result.calendar = new GwtCalendar(calendar.id, responseEntry.getSummary());
+              }
+
+              @Override
+              public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                result.error = e.getMessage();
+              }
+            });
+      }
+      if (batch.size() != 0) {
+        batch.execute();
+      }
+      executed = true;
+      return results;
+    } catch (IOException e) {
+      throw Utils.wrappedIOException(e);
+    } finally {
+      Map<String, GwtCalendar> changes = new LinkedHashMap<String, GwtCalendar>();
+      for (GwtCalendarResult result : results) {
+        if (result.error != null) {
+          // a failed update may still have been applied
+          executed = false;
+        }
+        changes.put(result.calendar.id, result.calendar);
+      }
+      if (executed) {
+        CalendarListCache.applyChanges(Utils.getUserId(), changes);
+      } else {
+        CalendarListCache.invalidate(Utils.getUserId());
+      }
+    }
+  }
+
+  /**
+   * Executes the queued requests of the given batch if it holds as many as the Calendar API accepts
+   * in one batch request, which leaves the batch empty for the next requests.
+   */
+  private static void executeIfFull(BatchRequest batch) throws IOException {
+    if (batch.size() == MAX_BATCH_SIZE) {
+      batch.execute();
     }
   }
 }
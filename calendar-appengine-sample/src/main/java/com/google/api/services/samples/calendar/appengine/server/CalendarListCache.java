@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.calendar.appengine.server;
+
+import com.google.api.services.samples.calendar.appengine.shared.GwtCalendar;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.IdentifiableValue;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memcache of each user's calendar list, as returned by
+ * {@link CalendarGwtRpcSample#getCalendars()}.
+ *
+ * <p>
+ * An entry is served as is for {@link #FRESH_MILLIS} after it was fetched or revalidated. After
+ * that, the list is requested again with the entry's ETag, so that an unchanged list costs a
+ * {@code 304 Not Modified} response, and changes made outside of this application are picked up.
+ * Calendars inserted, updated or deleted through this application are applied to the cached list
+ * in place. All writes are compare-and-set, so that a list fetched before a concurrent change does
+ * not overwrite it.
+ * </p>
+ *
+ * @author Yaniv Inbar
+ */
+final class CalendarListCache {
+
+  /** Time after which a cached list is revalidated, in milliseconds. */
+  static final long FRESH_MILLIS = 60 * 1000;
+
+  /** Lifetime of memcache entries, in seconds. */
+  private static final int EXPIRATION_SECONDS = 60 * 60;
+
+  private static final MemcacheService memcache =
+      MemcacheServiceFactory.getMemcacheService("calendars");
+
+  /** Cached calendar list of a user. */
+  static final class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final ArrayList<GwtCalendar> calendars;
+
+    /** ETag of the calendar list, or {@code null} if unknown. */
+    final String etag;
+
+    /** Time the list was last fetched or revalidated, in milliseconds. */
+    final long validated;
+
+    /** Identity of the memcache value this entry was read from, or {@code null}. */
+    transient IdentifiableValue identity;
+
+    Entry(ArrayList<GwtCalendar> calendars, String etag, long validated) {
+      this.calendars = calendars;
+      this.etag = etag;
+      this.validated = validated;
+    }
+
+    boolean isFresh() {
+      return System.currentTimeMillis() - validated < FRESH_MILLIS;
+    }
+
+    /** Returns a copy of the calendars, which callers may modify. */
+    List<GwtCalendar> copyCalendars() {
+      List<GwtCalendar> copy = new ArrayList<GwtCalendar>(calendars.size());
+      for (GwtCalendar calendar : calendars) {
+        copy.add(new GwtCalendar(calendar.id, calendar.title));
+      }
+      return copy;
+    }
+  }
+
+  private CalendarListCache() {
+  }
+
+  /** Returns the given user's cached calendar list, or {@code null} if it is not cached. */
+  static Entry get(String userId) {
+    IdentifiableValue value = memcache.getIdentifiable(userId);
+    if (value == null) {
+      return null;
+    }
+    Entry entry = (Entry) value.getValue();
+    entry.identity = value;
+    return entry;
+  }
+
+  /**
+   * Caches the given user's calendar list, unless the cached entry changed since {@code previous}
+   * was read from it.
+   *
+   * @param previous the entry returned by {@link #get}, or {@code null} if there was none
+   */
+  static void put(String userId, Entry previous, List<GwtCalendar> calendars, String etag) {
+    Entry entry =
+        new Entry(new ArrayList<GwtCalendar>(calendars), etag, System.currentTimeMillis());
+    Expiration expiration = Expiration.byDeltaSeconds(EXPIRATION_SECONDS);
+    if (previous == null) {
+      memcache.put(userId, entry, expiration, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    } else {
+      memcache.putIfUntouched(userId, previous.identity, entry, expiration);
+    }
+  }
+
+  /** Records that the given entry is still current, after a {@code 304 Not Modified} response. */
+  static void revalidated(String userId, Entry entry) {
+    put(userId, entry, entry.calendars, entry.etag);
+  }
+
+  /** Adds the given calendar to the user's cached list, or replaces the one with the same id. */
+  static void putCalendar(String userId, GwtCalendar calendar) {
+    applyChanges(userId, Collections.singletonMap(calendar.id, calendar));
+  }
+
+  /** Removes the calendar with the given id from the user's cached list. */
+  static void removeCalendar(String userId, String id) {
+    applyChanges(userId, Collections.<String, GwtCalendar>singletonMap(id, null));
+  }
+
+  /**
+   * Drops the user's cached list, so that it is fetched again, after changes whose outcome is not
+   * fully known.
+   */
+  static void invalidate(String userId) {
+    memcache.delete(userId);
+  }
+
+  /**
+   * Applies changes to the user's cached list in a single compare-and-set. Each calendar in the
+   * list whose id is a key of {@code changes} is replaced by the key's value, or removed if the
+   * value is {@code null}. Other values are appended. If another request changed the entry in the
+   * meantime, the entry is dropped instead.
+   */
+  static void applyChanges(String userId, Map<String, GwtCalendar> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    Entry entry = get(userId);
+    if (entry == null) {
+      return;
+    }
+    ArrayList<GwtCalendar> calendars = new ArrayList<GwtCalendar>(entry.calendars.size());
+    Set<String> applied = new HashSet<String>();
+    for (GwtCalendar calendar : entry.calendars) {
+      if (!changes.containsKey(calendar.id)) {
+        calendars.add(calendar);
+        continue;
+      }
+      applied.add(calendar.id);
+      GwtCalendar replacement = changes.get(calendar.id);
+      if (replacement != null) {
+        calendars.add(new GwtCalendar(replacement.id, replacement.title));
+      }
+    }
+    for (Map.Entry<String, GwtCalendar> change : changes.entrySet()) {
+      GwtCalendar added = change.getValue();
+      if (added != null && !applied.contains(change.getKey())) {
+        calendars.add(new GwtCalendar(added.id, added.title));
+      }
+    }
+    // keep the ETag and validation time, so the list is still revalidated once it is stale
+    Entry modified = new Entry(calendars, entry.etag, entry.validated);
+    if (!memcache.putIfUntouched(userId, entry.identity, modified,
+        Expiration.byDeltaSeconds(EXPIRATION_SECONDS))) {
+      memcache.delete(userId);
+    }
+  }
+}
@@ -81,9 +81,13 @@ class Utils {
         DATA_STORE_FACTORY).setAccessType("offline").build();
   }
 
+  /** Returns the id of the user making the current request. */
+  static String getUserId() {
+    return UserServiceFactory.getUserService().getCurrentUser().getUserId();
+  }
+
   static Calendar loadCalendarClient() throws IOException {
-    String userId = UserServiceFactory.getUserService().getCurrentUser().getUserId();
-    Credential credential = newFlow().loadCredential(userId);
+    Credential credential = newFlow().loadCredential(getUserId());
     return new Calendar.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).build();
   }
 
@@ -1,40 +1,38 @@
 /*
  * Copyright (c) 2010 Google Inc.
- *
+ * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
  * in compliance with the License. You may obtain a copy of the License at
- *
+ * 
  * http://www.apache.org/licenses/LICENSE-2.0
- *
+ * 
  * Unless required by applicable law or agreed to in writing, software distributed under the License
  * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
  * or implied. See the License for the specific language governing permissions and limitations under
  * the License.
  */
 
-package com.google.api.services.samples.discovery.cmdline;
+package com.google.api.services.samples.calendar.appengine.shared;
 
-import com.google.api.client.util.Lists;
-import com.google.api.client.util.Sets;
-
-import java.util.ArrayList;
-import java.util.SortedSet;
+import java.io.Serializable;
 
 /**
+ * Result of one calendar of a batch GWT RPC.
+ * 
  * @author Yaniv Inbar
  */
-public class MethodDetails implements Comparable<MethodDetails> {
-
-  String name;
-  ArrayList<String> requiredParameters = Lists.newArrayList();
-  SortedSet<String> optionalParameters = Sets.newTreeSet();
-  boolean hasContent;
+@SuppressWarnings("serial")
+public class GwtCalendarResult implements Serializable {
+  public GwtCalendarResult() {
+  }
 
-  @Override
-  public int compareTo(MethodDetails o) {
-    if (o == this) {
-      return 0;
-    }
-    return name.compareTo(o.name);
+  public GwtCalendarResult(GwtCalendar calendar) {
+    this.calendar = calendar;
   }
+
+  /** Calendar as returned by the Calendar API, or as requested if that failed. */
+  public GwtCalendar calendar;
+
+  /** Error message, or {@code null} if the operation succeeded. */
+  public String error;
 }
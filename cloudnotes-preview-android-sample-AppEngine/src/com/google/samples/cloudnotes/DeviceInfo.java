@@ -24,6 +24,9 @@ public class DeviceInfo {
   @Id
   private String deviceRegistrationID;
 
+  /** Lower-cased email address of the user who registered the device, used to target pings. */
+  private String emailAddress;
+
   public String getDeviceRegistrationID() {
     return deviceRegistrationID;
   }
@@ -32,4 +35,12 @@ public class DeviceInfo {
     this.deviceRegistrationID = deviceRegistrationID;
   }
 
+  public String getEmailAddress() {
+    return emailAddress;
+  }
+
+  public void setEmailAddress(String emailAddress) {
+    this.emailAddress = emailAddress;
+  }
+
 }
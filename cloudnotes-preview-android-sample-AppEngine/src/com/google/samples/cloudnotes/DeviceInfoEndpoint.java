@@ -14,10 +14,18 @@
 package com.google.samples.cloudnotes;
 
 import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
@@ -28,17 +36,59 @@ import javax.persistence.Query;
 @Api(name = "deviceinfoendpoint")
 public class DeviceInfoEndpoint {
 
+  /** Maximum number of entities in a single datastore batch put or delete. */
+  private static final int MAX_BATCH_SIZE = 500;
+
   /**
-   * This method lists all the entities inserted in datastore. It uses HTTP GET method.
+   * This method lists the entities inserted in datastore, one page at a time. It uses HTTP GET
+   * method.
    * 
-   * @return List of all entities persisted.
+   * @param limit the maximum number of entities to return, or {@code null} for
+   *        {@link QueryPages#DEFAULT_LIMIT}.
+   * @param cursor the {@code nextPageToken} returned by the previous page, or {@code null} for the
+   *        first page.
+   * @return Page of entities persisted.
    */
   @SuppressWarnings({"cast", "unchecked"})
-  public List<DeviceInfo> listDeviceInfo() {
+  public DeviceInfos listDeviceInfo(@Nullable @Named("limit") Integer limit,
+      @Nullable @Named("cursor") String cursor) throws BadRequestException {
+    int pageSize = QueryPages.checkLimit(limit);
+    Cursor startCursor = QueryPages.parseCursor(cursor);
     EntityManager mgr = getEntityManager();
-    List<DeviceInfo> result = new ArrayList<DeviceInfo>();
+    List<DeviceInfo> items = new ArrayList<DeviceInfo>();
+    String nextPageToken;
     try {
       Query query = mgr.createQuery("select from DeviceInfo");
+      QueryPages.setPage(query, startCursor, pageSize);
+      List<Object> results = (List<Object>) query.getResultList();
+      for (Object obj : results) {
+        items.add(((DeviceInfo) obj));
+      }
+      nextPageToken = QueryPages.nextCursor(results, pageSize);
+    } finally {
+      mgr.close();
+    }
+    DeviceInfos deviceInfos = new DeviceInfos();
+    deviceInfos.setItems(items);
+    deviceInfos.setNextPageToken(nextPageToken);
+    return deviceInfos;
+  }
+
+  /**
+   * This method lists the entities registered by the given user, using the single-property index
+   * on {@code emailAddress}. It is not exposed through the API.
+   * 
+   * @param emailAddress email address of the user owning the devices.
+   * @return List of the user's entities.
+   */
+  @SuppressWarnings({"cast", "unchecked"})
+  List<DeviceInfo> listDeviceInfoForUser(String emailAddress) {
+    EntityManager mgr = getEntityManager();
+    List<DeviceInfo> result = new ArrayList<DeviceInfo>();
+    try {
+      Query query =
+          mgr.createQuery("select d from DeviceInfo d where d.emailAddress = :emailAddress");
+      query.setParameter("emailAddress", normalizeEmailAddress(emailAddress));
       for (Object obj : (List<Object>) query.getResultList()) {
         result.add(((DeviceInfo) obj));
       }
@@ -74,6 +124,7 @@ public class DeviceInfoEndpoint {
   public DeviceInfo insertDeviceInfo(DeviceInfo deviceinfo) {
     EntityManager mgr = getEntityManager();
     try {
+      deviceinfo.setEmailAddress(normalizeEmailAddress(deviceinfo.getEmailAddress()));
       mgr.persist(deviceinfo);
     } finally {
       mgr.close();
@@ -90,6 +141,7 @@ public class DeviceInfoEndpoint {
   public DeviceInfo updateDeviceInfo(DeviceInfo deviceinfo) {
     EntityManager mgr = getEntityManager();
     try {
+      deviceinfo.setEmailAddress(normalizeEmailAddress(deviceinfo.getEmailAddress()));
       mgr.persist(deviceinfo);
     } finally {
       mgr.close();
@@ -115,6 +167,39 @@ public class DeviceInfoEndpoint {
     return deviceinfo;
   }
 
+  /**
+   * This method removes the entities with the given primary keys and then inserts the given
+   * entities, in datastore batches of at most {@link #MAX_BATCH_SIZE}. It is used to apply the
+   * registration changes reported by GCM and is not exposed through the API.
+   * 
+   * @param obsoleteIds the primary keys of the entities to be deleted.
+   * @param deviceinfos the entities to be inserted.
+   */
+  void replaceDeviceInfos(List<String> obsoleteIds, List<DeviceInfo> deviceinfos) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> keys = new ArrayList<Key>(obsoleteIds.size());
+    for (String id : obsoleteIds) {
+      keys.add(KeyFactory.createKey(DeviceInfo.class.getSimpleName(), id));
+    }
+    for (int start = 0; start < keys.size(); start += MAX_BATCH_SIZE) {
+      datastore.delete(keys.subList(start, Math.min(start + MAX_BATCH_SIZE, keys.size())));
+    }
+    List<Entity> entities = new ArrayList<Entity>(deviceinfos.size());
+    for (DeviceInfo deviceinfo : deviceinfos) {
+      Entity entity = new Entity(DeviceInfo.class.getSimpleName(),
+          deviceinfo.getDeviceRegistrationID());
+      entity.setProperty("emailAddress", normalizeEmailAddress(deviceinfo.getEmailAddress()));
+      entities.add(entity);
+    }
+    for (int start = 0; start < entities.size(); start += MAX_BATCH_SIZE) {
+      datastore.put(entities.subList(start, Math.min(start + MAX_BATCH_SIZE, entities.size())));
+    }
+  }
+
+  private static String normalizeEmailAddress(String emailAddress) {
+    return emailAddress == null ? null : emailAddress.toLowerCase();
+  }
+
   private static EntityManager getEntityManager() {
     return EMF.get().createEntityManager();
   }
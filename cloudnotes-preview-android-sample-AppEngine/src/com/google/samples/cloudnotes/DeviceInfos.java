@@ -13,25 +13,30 @@
  */
 package com.google.samples.cloudnotes;
 
-import com.appspot.api.services.noteendpoint.model.Note;
-
-import java.io.IOException;
+import java.util.List;
 
 /**
- * @author Sriram Saroop
+ * One page of {@link DeviceInfo} entities, returned by {@link DeviceInfoEndpoint#listDeviceInfo}.
  */
-public class AsyncEditNote extends CloudAsyncTask {
+public class DeviceInfos {
+
+  private List<DeviceInfo> items;
+  private String nextPageToken;
 
-  private final Note note;
+  public List<DeviceInfo> getItems() {
+    return items;
+  }
+
+  /** Returns the cursor of the next page, or {@code null} if this is the last page. */
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
 
-  public AsyncEditNote(CloudNotesActivity activity, Note note) {
-    super(activity);
-    this.note = note;
+  public void setItems(List<DeviceInfo> items) {
+    this.items = items;
   }
 
-  @Override
-  protected void doInBackground() throws IOException {
-    Note result = endpoint.updateNote(note).execute();
-    adapter.addTask(result);
+  public void setNextPageToken(String nextPageToken) {
+    this.nextPageToken = nextPageToken;
   }
 }
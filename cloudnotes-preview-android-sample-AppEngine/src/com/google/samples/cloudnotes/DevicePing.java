@@ -15,14 +15,24 @@ package com.google.samples.cloudnotes;
 
 import com.google.android.gcm.server.Constants;
 import com.google.android.gcm.server.Message;
+import com.google.android.gcm.server.MulticastResult;
 import com.google.android.gcm.server.Result;
 import com.google.android.gcm.server.Sender;
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Pings devices through GCM. Note changes are pinged from a task (see {@link DevicePingServlet}) so
+ * that the endpoint requests do not wait for GCM, and devices are pinged using multicast messages
+ * of up to {@link #MULTICAST_SIZE} registration ids.
+ * 
  * @author Sriram Saroop
  */
 public class DevicePing {
@@ -30,83 +40,137 @@ public class DevicePing {
   private static final DeviceInfoEndpoint endpoint = new DeviceInfoEndpoint();
   private static final Logger LOG = Logger.getLogger(DevicePing.class.getName());
 
+  /** Maximum number of registration ids GCM accepts in a single multicast message. */
+  static final int MULTICAST_SIZE = 1000;
+
+  /** URL of {@link DevicePingServlet}, as mapped in web.xml. */
+  static final String PING_URL = "/tasks/ping";
+
   /**
-   * Sends the message using the Sender object to the registered device.
+   * Sends the message to the given devices in multicast batches, then updates the registrations
+   * of all devices for which GCM returned a canonical registration id and removes the devices
+   * that are no longer registered, in as few datastore batches as possible.
    * 
-   * @param message the message to be sent in the GCM ping to the device.
-   * @param sender the Sender object to be used for ping,
-   * @param deviceInfo the registration id of the device.
-   * @return Result the result of the ping.
+   * @param msg the message to be sent in the GCM ping.
+   * @param sender the Sender object to be used for ping.
+   * @param devices the devices to ping.
+   * @throws IOException if a multicast batch could not be sent, after the other batches were sent
+   *         and the registrations were updated, so that the task queue retries the ping
    */
-  private static Result doSendViaGcm(String message, Sender sender, DeviceInfo deviceInfo)
+  private static void doSendViaGcm(Message msg, Sender sender, List<DeviceInfo> devices)
       throws IOException {
-    // Trim message if needed.
-    if (message.length() > 1000) {
-      message = message.substring(0, 1000) + "[...]";
-    }
+    IOException failure = null;
+    List<DeviceInfo> canonicalDevices = new ArrayList<DeviceInfo>();
+    List<String> obsoleteIds = new ArrayList<String>();
+    for (int start = 0; start < devices.size(); start += MULTICAST_SIZE) {
+      List<DeviceInfo> batch =
+          devices.subList(start, Math.min(start + MULTICAST_SIZE, devices.size()));
+      List<String> regIds = new ArrayList<String>(batch.size());
+      for (DeviceInfo deviceInfo : batch) {
+        regIds.add(deviceInfo.getDeviceRegistrationID());
+      }
 
-    Message msg =
-        new Message.Builder().addData("message", message).delayWhileIdle(false).timeToLive(0)
-            .build();
-    Result result = sender.send(msg, deviceInfo.getDeviceRegistrationID(), 5);
-    if (result.getMessageId() != null) {
-      String canonicalRegId = result.getCanonicalRegistrationId();
-      if (canonicalRegId != null) {
-        endpoint.removeDeviceInfo(deviceInfo.getDeviceRegistrationID());
-        deviceInfo.setDeviceRegistrationID(canonicalRegId);
-        endpoint.insertDeviceInfo(deviceInfo);
+      MulticastResult multicastResult;
+      try {
+        multicastResult = sender.send(msg, regIds, 5);
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "gcm", e);
+        failure = e;
+        continue;
       }
-    } else {
-      String error = result.getErrorCodeName();
-      if (error.equals(Constants.ERROR_NOT_REGISTERED)) {
-        endpoint.removeDeviceInfo(deviceInfo.getDeviceRegistrationID());
+      LOG.log(Level.INFO, "Multicast ID:" + multicastResult.getMulticastId() + ", success:"
+          + multicastResult.getSuccess() + ", failure:" + multicastResult.getFailure());
+
+      // results are in the same order as the registration ids
+      List<Result> results = multicastResult.getResults();
+      for (int i = 0; i < results.size(); i++) {
+        Result result = results.get(i);
+        DeviceInfo deviceInfo = batch.get(i);
+        if (result.getMessageId() != null) {
+          String canonicalRegId = result.getCanonicalRegistrationId();
+          if (canonicalRegId != null) {
+            obsoleteIds.add(deviceInfo.getDeviceRegistrationID());
+            DeviceInfo canonicalDevice = new DeviceInfo();
+            canonicalDevice.setDeviceRegistrationID(canonicalRegId);
+            canonicalDevice.setEmailAddress(deviceInfo.getEmailAddress());
+            canonicalDevices.add(canonicalDevice);
+          }
+        } else if (Constants.ERROR_NOT_REGISTERED.equals(result.getErrorCodeName())) {
+          obsoleteIds.add(deviceInfo.getDeviceRegistrationID());
+        }
       }
     }
-
-    return result;
+    endpoint.replaceDeviceInfos(obsoleteIds, canonicalDevices);
+    if (failure != null) {
+      throw failure;
+    }
   }
 
   /**
    * Ping all registered devices with the message.
    * 
    * @param message the message to be sent in the GCM ping to all registered devices.
+   * @throws IOException if some of the devices could not be pinged
    */
   public static void pingAllDevices(String message) throws IOException {
-    Sender sender = new Sender(Ids.API_KEY);
-    for (DeviceInfo deviceInfo : endpoint.listDeviceInfo()) {
-      doSendViaGcm(message, sender, deviceInfo);
+    // Trim message if needed.
+    if (message.length() > 1000) {
+      message = message.substring(0, 1000) + "[...]";
     }
-  }
 
-  /** Ping all registered devices with the message. */
-  public static void pingAllDevices(String emailAddress, String id, String operation) {
+    Message msg =
+        new Message.Builder().addData("message", message).delayWhileIdle(false).timeToLive(0)
+            .build();
     Sender sender = new Sender(Ids.API_KEY);
-    for (DeviceInfo deviceInfo : endpoint.listDeviceInfo()) {
-      Message msg =
-          new Message.Builder().addData("id", id).addData("emailAddress", emailAddress)
-              .addData("operation", operation).build();
-
-      Result result;
+    String cursor = null;
+    do {
+      DeviceInfos page;
       try {
-        result = sender.send(msg, deviceInfo.getDeviceRegistrationID(), 5);
-      } catch (IOException e1) {
-        LOG.log(Level.WARNING, "gcm", e1);
-        continue;
-      }
-      LOG.log(Level.INFO, "Message ID:" + result.getMessageId());
-      LOG.log(Level.INFO, "Error code:" + result.getErrorCodeName());
-      String error = result.getErrorCodeName();
-      if (result.getMessageId() != null) {
-        String canonicalRegId = result.getCanonicalRegistrationId();
-        if (canonicalRegId != null) {
-          endpoint.removeDeviceInfo(deviceInfo.getDeviceRegistrationID());
-          deviceInfo.setDeviceRegistrationID(canonicalRegId);
-          endpoint.insertDeviceInfo(deviceInfo);
-        }
-      } else if (error.equals(Constants.ERROR_NOT_REGISTERED)) {
-        endpoint.removeDeviceInfo(deviceInfo.getDeviceRegistrationID());
+        page = endpoint.listDeviceInfo(QueryPages.MAX_LIMIT, cursor);
+      } catch (BadRequestException e) {
+        throw new IllegalStateException(e);
       }
+      doSendViaGcm(msg, sender, page.getItems());
+      cursor = page.getNextPageToken();
+    } while (cursor != null);
+  }
+
+  /**
+   * Enqueues a task that pings all devices registered by the given user with the change to a
+   * note, so that the caller does not wait for GCM.
+   */
+  public static void enqueuePing(String emailAddress, String id, String operation) {
+    QueueFactory.getDefaultQueue().add(
+        TaskOptions.Builder.withUrl(PING_URL).param("emailAddress", emailAddress).param("id", id)
+            .param("operation", operation));
+  }
+
+  /**
+   * Enqueues a task that pings all devices registered by the given user once for a batch of note
+   * changes. The "sync" operation carries no note id; devices fetch the changes since their last
+   * sync instead.
+   */
+  public static void enqueueSyncPing(String emailAddress) {
+    QueueFactory.getDefaultQueue().add(
+        TaskOptions.Builder.withUrl(PING_URL).param("emailAddress", emailAddress)
+            .param("operation", "sync"));
+  }
+
+  /**
+   * Ping all devices registered by the given user with the change to a note.
+   * 
+   * @param id the id of the changed note, or {@code null} for a "sync" ping.
+   * @throws IOException if some of the devices could not be pinged
+   */
+  public static void pingAllDevices(String emailAddress, String id, String operation)
+      throws IOException {
+    Message.Builder builder = new Message.Builder();
+    if (id != null) {
+      builder.addData("id", id);
     }
+    Message msg =
+        builder.addData("emailAddress", emailAddress).addData("operation", operation).build();
+    doSendViaGcm(msg, new Sender(Ids.API_KEY), endpoint.listDeviceInfoForUser(emailAddress));
   }
 
 }
@@ -13,20 +13,41 @@
  */
 package com.google.samples.cloudnotes;
 
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+
+import java.io.Serializable;
+
 import javax.persistence.Entity;
 import javax.persistence.Id;
 
 /**
+ * Note of a user, stored through JPA.
+ * 
+ * <p>
+ * Batch writes and gets bypass JPA, so {@link #toEntity()} and {@link #fromEntity} must map the
+ * fields to the same datastore properties as JPA does: the id is the key name and each other field
+ * is a property of the same name.
+ * </p>
+ * 
  * @author Sriram Saroop
  */
 @Entity
-public class Note {
+public class Note implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   @Id
   private String id;
   private String description;
   private String emailAddress;
 
+  /** Time of the last change, in milliseconds since the epoch, assigned by the server. */
+  private Long updated;
+
+  /** Whether the note has been removed; removed notes are kept as tombstones for delta syncs. */
+  private Boolean deleted;
+
   public Note() {
   }
 
@@ -42,6 +63,14 @@ public class Note {
     return emailAddress;
   }
 
+  public Long getUpdated() {
+    return updated;
+  }
+
+  public Boolean getDeleted() {
+    return deleted;
+  }
+
 
   public void setId(String idIn) {
     this.id = idIn;
@@ -56,6 +85,46 @@ public class Note {
     this.emailAddress = emailAddress;
   }
 
+  public void setUpdated(Long updated) {
+    this.updated = updated;
+  }
+
+  public void setDeleted(Boolean deleted) {
+    this.deleted = deleted;
+  }
+
+  /** Returns the datastore key JPA uses for the note with the given id. */
+  static Key createKey(String id) {
+    return KeyFactory.createKey(Note.class.getSimpleName(), id);
+  }
+
+  /** Returns the datastore entity JPA stores for this note. */
+  com.google.appengine.api.datastore.Entity toEntity() {
+    com.google.appengine.api.datastore.Entity entity =
+        new com.google.appengine.api.datastore.Entity(createKey(id));
+    entity.setProperty("description", description);
+    entity.setProperty("emailAddress", emailAddress);
+    entity.setProperty("updated", updated);
+    entity.setProperty("deleted", deleted);
+    return entity;
+  }
+
+  /** Returns the note JPA loads from the given datastore entity. */
+  static Note fromEntity(com.google.appengine.api.datastore.Entity entity) {
+    Note note = new Note();
+    note.setId(entity.getKey().getName());
+    note.setDescription((String) entity.getProperty("description"));
+    note.setEmailAddress((String) entity.getProperty("emailAddress"));
+    note.setUpdated((Long) entity.getProperty("updated"));
+    note.setDeleted((Boolean) entity.getProperty("deleted"));
+    return note;
+  }
+
+  /** Returns whether the note is a tombstone left by a removal. */
+  boolean isRemoved() {
+    return Boolean.TRUE.equals(deleted);
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder();
@@ -65,6 +134,10 @@ public class Note {
     builder.append(description);
     builder.append(", emailAddress=");
     builder.append(emailAddress);
+    builder.append(", updated=");
+    builder.append(updated);
+    builder.append(", deleted=");
+    builder.append(deleted);
     return builder.toString();
   }
 }
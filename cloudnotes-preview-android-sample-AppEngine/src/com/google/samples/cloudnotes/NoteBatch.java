@@ -13,23 +13,20 @@
  */
 package com.google.samples.cloudnotes;
 
-import com.appspot.api.services.noteendpoint.model.Note;
-
-import java.io.IOException;
 import java.util.List;
 
 /**
- * @author Sriram Saroop
+ * Notes written by {@link NoteEndpoint#insertNotes} and {@link NoteEndpoint#updateNotes}.
  */
-public class AsyncFetchNotes extends CloudAsyncTask {
+public class NoteBatch {
+
+  private List<Note> items;
 
-  public AsyncFetchNotes(CloudNotesActivity activity) {
-    super(activity);
+  public List<Note> getItems() {
+    return items;
   }
 
-  @Override
-  protected void doInBackground() throws IOException {
-    List<Note> list = endpoint.listNote().execute().getItems();
-    adapter.setTasks(list);
+  public void setItems(List<Note> items) {
+    this.items = items;
   }
 }
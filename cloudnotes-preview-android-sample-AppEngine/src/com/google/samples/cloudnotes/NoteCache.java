@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.samples.cloudnotes;
+
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.InvalidValueException;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.appengine.api.memcache.MemcacheServiceException;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-through cache of notes, keyed by note id, and of the first page of each user's note list.
+ * 
+ * <p>
+ * Entries are kept in memcache, so that a note read right after it was written (for example by a
+ * device fetching the note it was just pinged about) is served without a datastore read, whichever
+ * instance handles the request. Every entry is also kept in a small per-instance LRU map with a
+ * short lifetime, which is only consulted while memcache is unavailable.
+ * </p>
+ * 
+ * <p>
+ * The list page comes from an eventually consistent query, which may not yet reflect a note that
+ * was just written. A change therefore replaces the cached page with a marker for
+ * {@link #LIST_SETTLE_SECONDS}, during which the page is neither returned nor cached again.
+ * </p>
+ * 
+ * <p>
+ * Cached notes are copies: callers may modify the notes they pass in or get back. Hit rate and
+ * lookup latency are logged every {@link #STATS_INTERVAL} lookups.
+ * </p>
+ */
+final class NoteCache {
+
+  private static final Logger LOG = Logger.getLogger(NoteCache.class.getName());
+
+  /** Lifetime of memcache entries, in seconds. */
+  private static final int EXPIRATION_SECONDS = 10 * 60;
+
+  /**
+   * How long after a change of a user's notes the first page of their list is not cached, in
+   * seconds, so that the change is visible to the list query by the time it is cached again.
+   */
+  private static final int LIST_SETTLE_SECONDS = 30;
+
+  /** Lifetime of local fallback entries, in milliseconds. */
+  private static final long LOCAL_EXPIRATION_MILLIS = 30 * 1000;
+
+  /** Maximum number of entries kept in the local fallback map. */
+  private static final int LOCAL_CAPACITY = 1000;
+
+  /** Number of lookups between two log lines reporting the cache statistics. */
+  private static final int STATS_INTERVAL = 1000;
+
+  private static final MemcacheService memcache;
+  static {
+    memcache = MemcacheServiceFactory.getMemcacheService("notes");
+    // report service errors to the caller so that the local map can take over
+    memcache.setErrorHandler(ErrorHandlers.getStrict());
+  }
+
+  private static final Map<String, LocalEntry> local = Collections
+      .synchronizedMap(new LinkedHashMap<String, LocalEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+          return size() > LOCAL_CAPACITY;
+        }
+      });
+
+  private static final AtomicLong lookups = new AtomicLong();
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong lookupNanos = new AtomicLong();
+
+  /** Value of the local fallback map together with the time it expires. */
+  private static final class LocalEntry {
+    final Object value;
+    final long expires;
+
+    LocalEntry(Object value) {
+      this.value = value;
+      expires = System.currentTimeMillis() + LOCAL_EXPIRATION_MILLIS;
+    }
+  }
+
+  private NoteCache() {
+  }
+
+  /**
+   * Returns a copy of the cached note with the given id, which may be a tombstone, or {@code null}
+   * if it is not cached.
+   */
+  static Note getNote(String id) {
+    Note note = (Note) get(noteKey(id));
+    return note == null ? null : copy(note);
+  }
+
+  /** Caches a copy of the given note, replacing any cached copy with the same id. */
+  static void putNote(Note note) {
+    put(noteKey(note.getId()), copy(note));
+  }
+
+  /**
+   * Returns copies of the cached notes with the given ids, which may be tombstones, keyed by id.
+   * Ids of notes that are not cached are missing from the returned map.
+   */
+  static Map<String, Note> getNotes(Collection<String> ids) {
+    List<String> keys = new ArrayList<String>(ids.size());
+    for (String id : ids) {
+      keys.add(noteKey(id));
+    }
+    Map<String, Note> notes = new HashMap<String, Note>();
+    for (Object value : getAll(keys).values()) {
+      Note note = (Note) value;
+      notes.put(note.getId(), copy(note));
+    }
+    return notes;
+  }
+
+  /** Caches copies of the given notes in a single memcache call. */
+  static void putNotes(Collection<Note> notes) {
+    Map<String, Object> values = new HashMap<String, Object>();
+    for (Note note : notes) {
+      values.put(noteKey(note.getId()), copy(note));
+    }
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      local.put(entry.getKey(), new LocalEntry(entry.getValue()));
+    }
+    try {
+      memcache.putAll(values, Expiration.byDeltaSeconds(EXPIRATION_SECONDS));
+    } catch (MemcacheServiceException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+    }
+  }
+
+  /**
+   * Returns a copy of the cached first page of the given user's note list, which holds
+   * {@link QueryPages#DEFAULT_LIMIT} notes, or {@code null} if it is not cached.
+   */
+  static Notes getFirstPage(String emailAddress) {
+    Object value = get(listKey(emailAddress));
+    return value instanceof Notes ? copy((Notes) value) : null;
+  }
+
+  /**
+   * Caches a copy of the first page of the given user's note list, unless one of the notes changed
+   * less than {@link #LIST_SETTLE_SECONDS} ago, in which case the page may be stale.
+   */
+  static void putFirstPage(String emailAddress, Notes notes) {
+    String key = listKey(emailAddress);
+    Notes value = copy(notes);
+    if (!(getLocal(key) instanceof Long)) {
+      local.put(key, new LocalEntry(value));
+    }
+    try {
+      // fails if the invalidation marker is present
+      memcache.put(key, value, Expiration.byDeltaSeconds(EXPIRATION_SECONDS),
+          SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    } catch (MemcacheServiceException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+    }
+  }
+
+  /**
+   * Drops the cached first page of the given user's note list after one of the notes changed, and
+   * keeps it from being cached again for {@link #LIST_SETTLE_SECONDS}.
+   */
+  static void invalidateList(String emailAddress) {
+    String key = listKey(emailAddress);
+    // the marker holds the time of the change
+    Long marker = System.currentTimeMillis();
+    local.put(key, new LocalEntry(marker));
+    try {
+      memcache.put(key, marker, Expiration.byDeltaSeconds(LIST_SETTLE_SECONDS));
+    } catch (MemcacheServiceException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+    }
+  }
+
+  private static Object get(String key) {
+    long start = System.nanoTime();
+    Object value;
+    try {
+      value = memcache.get(key);
+    } catch (MemcacheServiceException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+      value = getLocal(key);
+    } catch (InvalidValueException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+      value = getLocal(key);
+    }
+    recordLookup(value != null, System.nanoTime() - start);
+    return value;
+  }
+
+  private static Map<String, Object> getAll(List<String> keys) {
+    long start = System.nanoTime();
+    Map<String, Object> values;
+    try {
+      values = memcache.getAll(keys);
+    } catch (MemcacheServiceException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+      values = getAllLocal(keys);
+    } catch (InvalidValueException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+      values = getAllLocal(keys);
+    }
+    // account the batch as one lookup per key, each taking an equal share of the latency
+    long nanos = (System.nanoTime() - start) / Math.max(1, keys.size());
+    for (String key : keys) {
+      recordLookup(values.containsKey(key), nanos);
+    }
+    return values;
+  }
+
+  private static Map<String, Object> getAllLocal(List<String> keys) {
+    Map<String, Object> values = new HashMap<String, Object>();
+    for (String key : keys) {
+      Object value = getLocal(key);
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    return values;
+  }
+
+  private static Object getLocal(String key) {
+    LocalEntry entry = local.get(key);
+    if (entry == null || entry.expires < System.currentTimeMillis()) {
+      return null;
+    }
+    return entry.value;
+  }
+
+  private static void put(String key, Object value) {
+    local.put(key, new LocalEntry(value));
+    try {
+      memcache.put(key, value, Expiration.byDeltaSeconds(EXPIRATION_SECONDS));
+    } catch (MemcacheServiceException e) {
+      LOG.log(Level.WARNING, "memcache", e);
+    }
+  }
+
+  private static void recordLookup(boolean hit, long nanos) {
+    if (hit) {
+      hits.incrementAndGet();
+    }
+    long totalNanos = lookupNanos.addAndGet(nanos);
+    long count = lookups.incrementAndGet();
+    if (count % STATS_INTERVAL == 0) {
+      long hitCount = hits.get();
+      LOG.info(String.format("note cache: %d lookups, hit rate %.1f%%, average lookup %.2f ms",
+          count, 100.0 * hitCount / count, totalNanos / 1e6 / count));
+    }
+  }
+
+  private static String noteKey(String id) {
+    return "note:" + id;
+  }
+
+  private static String listKey(String emailAddress) {
+    return "list:" + emailAddress.toLowerCase();
+  }
+
+  private static Note copy(Note note) {
+    Note copy = new Note();
+    copy.setId(note.getId());
+    copy.setDescription(note.getDescription());
+    copy.setEmailAddress(note.getEmailAddress());
+    copy.setUpdated(note.getUpdated());
+    copy.setDeleted(note.getDeleted());
+    return copy;
+  }
+
+  private static Notes copy(Notes notes) {
+    List<Note> items = new ArrayList<Note>(notes.getItems().size());
+    for (Note note : notes.getItems()) {
+      items.add(copy(note));
+    }
+    Notes copy = new Notes();
+    copy.setItems(items);
+    copy.setNextPageToken(notes.getNextPageToken());
+    return copy;
+  }
+}
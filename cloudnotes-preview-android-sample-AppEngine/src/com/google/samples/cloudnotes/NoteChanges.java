@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.samples.cloudnotes;
+
+import java.util.List;
+
+/**
+ * One page of the notes changed since a given time, returned by
+ * {@link NoteEndpoint#listNoteChanges}.
+ */
+public class NoteChanges {
+
+  private List<Note> items;
+  private String nextPageToken;
+  private Long syncTime;
+
+  /** Returns the changed notes, including tombstones of removed notes. */
+  public List<Note> getItems() {
+    return items;
+  }
+
+  /** Returns the token for the next page, or {@code null} if this is the last page. */
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+
+  /** Returns the {@code since} value to use for the next sync, once all pages have been read. */
+  public Long getSyncTime() {
+    return syncTime;
+  }
+
+  public void setItems(List<Note> items) {
+    this.items = items;
+  }
+
+  public void setNextPageToken(String nextPageToken) {
+    this.nextPageToken = nextPageToken;
+  }
+
+  public void setSyncTime(Long syncTime) {
+    this.syncTime = syncTime;
+  }
+}
@@ -14,68 +14,182 @@
 package com.google.samples.cloudnotes;
 
 import com.google.api.server.spi.config.Api;
+import com.google.api.server.spi.config.ApiMethod;
+import com.google.api.server.spi.config.ApiMethod.HttpMethod;
+import com.google.api.server.spi.response.BadRequestException;
 import com.google.api.server.spi.response.NotFoundException;
 import com.google.api.server.spi.response.UnauthorizedException;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.users.User;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
 /**
+ * Notes are read through {@link NoteCache}, which every write updates.
+ * 
  * @author Sriram Saroop
  */
 @Api(name = "noteendpoint", clientIds = {Ids.CLIENT_ID}, audiences = {Ids.AUDIENCE})
 public class NoteEndpoint {
 
+  /** Maximum number of entities returned by one {@link #listNoteChanges} page. */
+  private static final int CHANGES_PAGE_SIZE = 200;
+
+  /**
+   * How far before the start of a sync the returned {@code syncTime} lies, in milliseconds. Notes
+   * written shortly before the sync may not yet be visible to its query, or may carry a slightly
+   * earlier update time from another instance's clock; they are returned again by the next sync.
+   */
+  private static final long SYNC_WINDOW_MILLIS = 30 * 1000;
+
+  /** Maximum number of notes written by one batch method, the datastore's batch put limit. */
+  private static final int MAX_BATCH_SIZE = 500;
+
   /**
-   * This method lists all the entities inserted in datastore. It uses HTTP GET method.
+   * This method lists the entities of the user inserted in datastore, one page at a time. It uses
+   * HTTP GET method.
    * 
-   * @return List of all entities persisted.
+   * @param limit the maximum number of entities to return, or {@code null} for
+   *        {@link QueryPages#DEFAULT_LIMIT}.
+   * @param cursor the {@code nextPageToken} returned by the previous page, or {@code null} for the
+   *        first page.
+   * @return Page of entities persisted.
    */
   @SuppressWarnings({"cast", "unchecked"})
-  public List<Note> listNote(User user) throws UnauthorizedException {
+  public Notes listNote(@Nullable @Named("limit") Integer limit,
+      @Nullable @Named("cursor") String cursor, User user) throws UnauthorizedException,
+      BadRequestException {
     if (user == null) {
       throw new UnauthorizedException("missing user");
     }
+    int pageSize = QueryPages.checkLimit(limit);
+    Cursor startCursor = QueryPages.parseCursor(cursor);
+    boolean firstDefaultPage = startCursor == null && pageSize == QueryPages.DEFAULT_LIMIT;
+    if (firstDefaultPage) {
+      Notes cached = NoteCache.getFirstPage(user.getEmail());
+      if (cached != null) {
+        return cached;
+      }
+    }
     EntityManager mgr = getEntityManager();
-    List<Note> result = new ArrayList<Note>();
+    List<Note> items = new ArrayList<Note>();
+    String nextPageToken;
     try {
       Query query = mgr.createQuery("select n from Note n where n.emailAddress = :emailAddress");
       query.setParameter("emailAddress", user.getEmail());
-      for (Object obj : (List<Object>) query.getResultList()) {
-        result.add(((Note) obj));
+      QueryPages.setPage(query, startCursor, pageSize);
+      List<Object> results = (List<Object>) query.getResultList();
+      for (Object obj : results) {
+        Note note = (Note) obj;
+        if (!note.isRemoved()) {
+          items.add(note);
+        }
       }
+      nextPageToken = QueryPages.nextCursor(results, pageSize);
     } finally {
       mgr.close();
     }
-    return result;
+    Notes notes = new Notes();
+    notes.setItems(items);
+    notes.setNextPageToken(nextPageToken);
+    if (firstDefaultPage) {
+      NoteCache.putFirstPage(user.getEmail(), notes);
+    }
+    return notes;
   }
 
   /**
-   * This method gets the entity having primary key id. It uses HTTP GET method.
+   * This method lists the entities of the user that changed since the given time, including
+   * tombstones of removed entities, one page at a time. It uses HTTP GET method.
    * 
-   * @param id the primary key of the java bean.
-   * @return The entity with primary key id.
+   * @param since the {@code syncTime} returned by the last page of the previous sync, or 0 to list
+   *        all entities.
+   * @param pageToken the {@code nextPageToken} returned by the previous page of this sync, or
+   *        {@code null} for the first page.
+   * @return Page of changed entities.
    */
-  public Note getNote(@Named("id") String id, User user) throws UnauthorizedException,
-      NotFoundException {
+  @SuppressWarnings({"cast", "unchecked"})
+  public NoteChanges listNoteChanges(@Named("since") Long since,
+      @Nullable @Named("pageToken") String pageToken, User user) throws UnauthorizedException,
+      BadRequestException {
     if (user == null) {
       throw new UnauthorizedException("missing user");
     }
+    // The page token carries the sync time chosen by the first page and the datastore cursor.
+    long syncTime = System.currentTimeMillis() - SYNC_WINDOW_MILLIS;
+    Cursor cursor = null;
+    if (pageToken != null) {
+      int separator = pageToken.indexOf(':');
+      try {
+        syncTime = Long.parseLong(pageToken.substring(0, separator));
+      } catch (RuntimeException e) {
+        throw new BadRequestException("invalid page token");
+      }
+      cursor = QueryPages.parseCursor(pageToken.substring(separator + 1));
+    }
     EntityManager mgr = getEntityManager();
-    Note note = null;
+    List<Note> items = new ArrayList<Note>();
+    String nextPageToken = null;
     try {
-      note = mgr.find(Note.class, id);
-      if (note == null || !note.getEmailAddress().equalsIgnoreCase(user.getEmail())) {
-        throw new NotFoundException("note not found");
+      Query query;
+      if (since == null || since <= 0) {
+        // a full sync also picks up notes written before they carried an update time
+        query = mgr.createQuery("select n from Note n where n.emailAddress = :emailAddress");
+      } else {
+        query = mgr.createQuery(
+            "select n from Note n where n.emailAddress = :emailAddress and n.updated >= :since");
+        query.setParameter("since", since);
+      }
+      query.setParameter("emailAddress", user.getEmail());
+      QueryPages.setPage(query, cursor, CHANGES_PAGE_SIZE);
+      List<Object> results = (List<Object>) query.getResultList();
+      for (Object obj : results) {
+        items.add((Note) obj);
+      }
+      String nextCursor = QueryPages.nextCursor(results, CHANGES_PAGE_SIZE);
+      if (nextCursor != null) {
+        nextPageToken = syncTime + ":" + nextCursor;
       }
     } finally {
       mgr.close();
     }
+    NoteChanges changes = new NoteChanges();
+    changes.setItems(items);
+    changes.setNextPageToken(nextPageToken);
+    changes.setSyncTime(syncTime);
+    return changes;
+  }
+
+  /**
+   * This method gets the entity having primary key id. It uses HTTP GET method.
+   * 
+   * @param id the primary key of the java bean.
+   * @return The entity with primary key id.
+   */
+  public Note getNote(@Named("id") String id, User user) throws UnauthorizedException,
+      NotFoundException {
+    if (user == null) {
+      throw new UnauthorizedException("missing user");
+    }
+    Note note = findNote(id);
+    if (note == null || note.isRemoved()
+        || !note.getEmailAddress().equalsIgnoreCase(user.getEmail())) {
+      throw new NotFoundException("note not found");
+    }
     return note;
   }
 
@@ -92,11 +206,15 @@ public class NoteEndpoint {
     EntityManager mgr = getEntityManager();
     try {
       note.setEmailAddress(user.getEmail());
+      note.setUpdated(System.currentTimeMillis());
+      note.setDeleted(false);
       mgr.persist(note);
     } finally {
       mgr.close();
     }
-    DevicePing.pingAllDevices(user.getEmail(), note.getId(), "insert");
+    NoteCache.putNote(note);
+    NoteCache.invalidateList(user.getEmail());
+    DevicePing.enqueuePing(user.getEmail(), note.getId(), "insert");
     return note;
   }
 
@@ -113,11 +231,15 @@ public class NoteEndpoint {
     EntityManager mgr = getEntityManager();
     try {
       note.setEmailAddress(user.getEmail());
+      note.setUpdated(System.currentTimeMillis());
+      note.setDeleted(false);
       mgr.persist(note);
     } finally {
       mgr.close();
     }
-    DevicePing.pingAllDevices(user.getEmail(), note.getId(), "update");
+    NoteCache.putNote(note);
+    NoteCache.invalidateList(user.getEmail());
+    DevicePing.enqueuePing(user.getEmail(), note.getId(), "update");
     return note;
   }
 
@@ -132,18 +254,197 @@ public class NoteEndpoint {
     if (user == null) {
       throw new UnauthorizedException("missing user");
     }
+    Note note = findNote(id);
+    if (note == null || note.isRemoved()
+        || !note.getEmailAddress().equalsIgnoreCase(user.getEmail())) {
+      throw new NotFoundException("note not found");
+    }
     EntityManager mgr = getEntityManager();
-    Note note = null;
     try {
-      note = mgr.find(Note.class, id);
-      if (note == null || !note.getEmailAddress().equalsIgnoreCase(user.getEmail())) {
-        throw new NotFoundException("note not found");
+      // keep a tombstone so that delta syncs see the removal
+      note.setDeleted(true);
+      note.setUpdated(System.currentTimeMillis());
+      // the note was loaded by another entity manager or comes from the cache
+      mgr.merge(note);
+    } finally {
+      mgr.close();
+    }
+    NoteCache.putNote(note);
+    NoteCache.invalidateList(user.getEmail());
+    DevicePing.enqueuePing(user.getEmail(), id, "remove");
+    return note;
+  }
+
+  /**
+   * This inserts the entities into App Engine datastore in a single batch. It uses HTTP POST
+   * method. The user's devices are pinged once for the whole batch. An entity whose id is already
+   * used by a note that was not removed is reported as an error.
+   * 
+   * @param batch the entities to be inserted.
+   * @return The outcome for each entity, in order.
+   */
+  @ApiMethod(path = "notes/insert", httpMethod = HttpMethod.POST)
+  public NoteResults insertNotes(NoteBatch batch, User user) throws UnauthorizedException,
+      BadRequestException {
+    return writeNotes(batch.getItems(), WriteMode.INSERT, user);
+  }
+
+  /**
+   * This method is used for updating entities in a single batch. It uses HTTP POST method. The
+   * user's devices are pinged once for the whole batch. An entity that does not match an existing
+   * note of the user is reported as an error.
+   * 
+   * @param batch the entities to be updated.
+   * @return The outcome for each entity, in order.
+   */
+  @ApiMethod(path = "notes/update", httpMethod = HttpMethod.POST)
+  public NoteResults updateNotes(NoteBatch batch, User user) throws UnauthorizedException,
+      BadRequestException {
+    return writeNotes(batch.getItems(), WriteMode.UPDATE, user);
+  }
+
+  /**
+   * This method removes the entities with the given primary keys in a single batch. It uses HTTP
+   * POST method. The user's devices are pinged once for the whole batch.
+   * 
+   * @param ids the primary keys of the entities to be deleted.
+   * @return The outcome for each entity, in order.
+   */
+  @ApiMethod(path = "notes/remove", httpMethod = HttpMethod.POST)
+  public NoteResults removeNotes(NoteIds ids, User user) throws UnauthorizedException,
+      BadRequestException {
+    List<Note> notes = new ArrayList<Note>();
+    if (ids.getIds() != null) {
+      for (String id : ids.getIds()) {
+        Note note = new Note();
+        note.setId(id);
+        notes.add(note);
+      }
+    }
+    return writeNotes(notes, WriteMode.REMOVE, user);
+  }
+
+  /** Kind of write applied by {@link #writeNotes}. */
+  private enum WriteMode {
+    INSERT, UPDATE, REMOVE
+  }
+
+  /**
+   * Writes the given notes, or tombstones for them when removing, with one cache lookup, one
+   * datastore get for the notes missing from the cache, and one datastore put. Notes without an id
+   * or repeated in the batch are reported as errors, and so are notes to be inserted whose id is
+   * taken, and notes to be updated or removed that are not existing notes of the user.
+   */
+  private NoteResults writeNotes(List<Note> notes, WriteMode mode, User user)
+      throws UnauthorizedException, BadRequestException {
+    if (user == null) {
+      throw new UnauthorizedException("missing user");
+    }
+    if (notes == null) {
+      notes = new ArrayList<Note>();
+    }
+    if (notes.size() > MAX_BATCH_SIZE) {
+      throw new BadRequestException("at most " + MAX_BATCH_SIZE + " notes per batch");
+    }
+    Set<String> ids = new HashSet<String>();
+    for (Note note : notes) {
+      if (note.getId() != null) {
+        ids.add(note.getId());
       }
-      mgr.remove(note);
+    }
+    Map<String, Note> existing = findNotes(ids);
+
+    long now = System.currentTimeMillis();
+    Set<String> seen = new HashSet<String>();
+    List<NoteResult> results = new ArrayList<NoteResult>(notes.size());
+    List<Note> written = new ArrayList<Note>();
+    List<Entity> entities = new ArrayList<Entity>();
+    for (Note note : notes) {
+      String id = note.getId();
+      NoteResult result = new NoteResult();
+      result.setId(id);
+      results.add(result);
+      Note current = existing.get(id);
+      boolean owned =
+          current != null && current.getEmailAddress().equalsIgnoreCase(user.getEmail());
+      if (id == null) {
+        result.setError("missing id");
+      } else if (!seen.add(id)) {
+        result.setError("duplicate id");
+      } else if (mode == WriteMode.INSERT && current != null
+          && !(owned && current.isRemoved())) {
+        result.setError("note already exists");
+      } else if (mode != WriteMode.INSERT && (!owned || current.isRemoved())) {
+        result.setError("note not found");
+      } else {
+        if (mode == WriteMode.REMOVE) {
+          // keep a tombstone so that delta syncs see the removal
+          note = current;
+        }
+        note.setEmailAddress(user.getEmail());
+        note.setUpdated(now);
+        note.setDeleted(mode == WriteMode.REMOVE);
+        result.setNote(note);
+        written.add(note);
+        entities.add(note.toEntity());
+      }
+    }
+
+    if (!entities.isEmpty()) {
+      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+      datastore.put(entities);
+      NoteCache.putNotes(written);
+      NoteCache.invalidateList(user.getEmail());
+      DevicePing.enqueueSyncPing(user.getEmail());
+    }
+    NoteResults noteResults = new NoteResults();
+    noteResults.setItems(results);
+    return noteResults;
+  }
+
+  /**
+   * Returns the notes with the given ids, which may be tombstones, from the cache or else from the
+   * datastore in a single batch get, keyed by id. Ids without a note are missing from the map.
+   */
+  private static Map<String, Note> findNotes(Set<String> ids) {
+    Map<String, Note> notes = NoteCache.getNotes(ids);
+    List<Key> keys = new ArrayList<Key>();
+    for (String id : ids) {
+      if (!notes.containsKey(id)) {
+        keys.add(Note.createKey(id));
+      }
+    }
+    if (!keys.isEmpty()) {
+      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+      Map<String, Note> loaded = new HashMap<String, Note>();
+      for (Entity entity : datastore.get(keys).values()) {
+        Note note = Note.fromEntity(entity);
+        loaded.put(note.getId(), note);
+      }
+      NoteCache.putNotes(loaded.values());
+      notes.putAll(loaded);
+    }
+    return notes;
+  }
+
+  /**
+   * Returns the note with the given id, which may be a tombstone, from the cache or else from the
+   * datastore, or {@code null} if there is no such note.
+   */
+  private static Note findNote(String id) {
+    Note note = NoteCache.getNote(id);
+    if (note != null) {
+      return note;
+    }
+    EntityManager mgr = getEntityManager();
+    try {
+      note = mgr.find(Note.class, id);
     } finally {
       mgr.close();
     }
-    DevicePing.pingAllDevices(user.getEmail(), id, "remove");
+    if (note != null) {
+      NoteCache.putNote(note);
+    }
     return note;
   }
 
@@ -13,25 +13,20 @@
  */
 package com.google.samples.cloudnotes;
 
-import com.appspot.api.services.noteendpoint.model.Note;
-
-import java.io.IOException;
+import java.util.List;
 
 /**
- * @author Sriram Saroop
+ * Ids of the notes removed by {@link NoteEndpoint#removeNotes}.
  */
-public class AsyncFetchNote extends CloudAsyncTask {
+public class NoteIds {
 
-  private final String id;
+  private List<String> ids;
 
-  public AsyncFetchNote(CloudNotesActivity activity, String id) {
-    super(activity);
-    this.id = id;
+  public List<String> getIds() {
+    return ids;
   }
 
-  @Override
-  protected void doInBackground() throws IOException {
-    Note task = endpoint.getNote(id).execute();
-    adapter.addTask(task);
+  public void setIds(List<String> ids) {
+    this.ids = ids;
   }
 }
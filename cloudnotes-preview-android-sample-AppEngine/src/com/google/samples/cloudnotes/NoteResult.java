@@ -13,25 +13,38 @@
  */
 package com.google.samples.cloudnotes;
 
-import com.appspot.api.services.noteendpoint.model.Note;
-
-import java.io.IOException;
-
 /**
- * @author Sriram Saroop
+ * Outcome of writing one note of a batch: either the note as stored, or an error message.
  */
-public class AsyncDeleteNote extends CloudAsyncTask {
+public class NoteResult {
+
+  private String id;
+  private Note note;
+  private String error;
+
+  public String getId() {
+    return id;
+  }
 
-  private final Note note;
+  /** Returns the note as stored, or {@code null} if the write failed. */
+  public Note getNote() {
+    return note;
+  }
+
+  /** Returns why the note was not written, or {@code null} if the write succeeded. */
+  public String getError() {
+    return error;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
 
-  public AsyncDeleteNote(CloudNotesActivity activity, Note note) {
-    super(activity);
+  public void setNote(Note note) {
     this.note = note;
   }
 
-  @Override
-  protected void doInBackground() throws IOException {
-    endpoint.removeNote(note.getId()).execute();
-    adapter.removeTask(note.getId());
+  public void setError(String error) {
+    this.error = error;
   }
 }
@@ -13,26 +13,20 @@
  */
 package com.google.samples.cloudnotes;
 
-
-import com.appspot.api.services.noteendpoint.model.Note;
-
-import java.io.IOException;
+import java.util.List;
 
 /**
- * @author Sriram Saroop
+ * Per-note outcomes of a batch write, in the order of the request.
  */
-public class AsyncAddNote extends CloudAsyncTask {
+public class NoteResults {
 
-  private final Note note;
+  private List<NoteResult> items;
 
-  public AsyncAddNote(CloudNotesActivity activity, Note note) {
-    super(activity);
-    this.note = note;
+  public List<NoteResult> getItems() {
+    return items;
   }
 
-  @Override
-  protected void doInBackground() throws IOException {
-    Note result = endpoint.insertNote(note).execute();
-    adapter.addTask(result);
+  public void setItems(List<NoteResult> items) {
+    this.items = items;
   }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.samples.cloudnotes;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of {@link Note} entities, returned by {@link NoteEndpoint#listNote}.
+ */
+public class Notes implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private List<Note> items;
+  private String nextPageToken;
+
+  public List<Note> getItems() {
+    return items;
+  }
+
+  /** Returns the cursor of the next page, or {@code null} if this is the last page. */
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+
+  public void setItems(List<Note> items) {
+    this.items = items;
+  }
+
+  public void setNextPageToken(String nextPageToken) {
+    this.nextPageToken = nextPageToken;
+  }
+}
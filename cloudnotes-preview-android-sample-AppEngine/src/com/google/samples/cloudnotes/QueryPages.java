@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.samples.cloudnotes;
+
+import com.google.api.server.spi.response.BadRequestException;
+import com.google.appengine.api.datastore.Cursor;
+
+import org.datanucleus.store.appengine.query.JPACursorHelper;
+
+import java.util.List;
+
+import javax.persistence.Query;
+
+/**
+ * Helpers for listing entities one bounded page at a time using opaque datastore cursors.
+ */
+final class QueryPages {
+
+  /** Page size used when the caller does not specify a limit. */
+  static final int DEFAULT_LIMIT = 100;
+
+  /** Largest page size a caller may request. */
+  static final int MAX_LIMIT = 500;
+
+  private QueryPages() {
+  }
+
+  /**
+   * Returns the page size for the given requested limit.
+   * 
+   * @param limit requested page size or {@code null} for {@link #DEFAULT_LIMIT}.
+   */
+  static int checkLimit(Integer limit) throws BadRequestException {
+    if (limit == null) {
+      return DEFAULT_LIMIT;
+    }
+    if (limit <= 0 || limit > MAX_LIMIT) {
+      throw new BadRequestException("limit must be between 1 and " + MAX_LIMIT);
+    }
+    return limit;
+  }
+
+  /**
+   * Parses a cursor returned by {@link #nextCursor}.
+   * 
+   * @param cursor web-safe cursor string or {@code null} for the first page.
+   * @return the cursor or {@code null} for the first page.
+   */
+  static Cursor parseCursor(String cursor) throws BadRequestException {
+    if (cursor == null) {
+      return null;
+    }
+    try {
+      return Cursor.fromWebSafeString(cursor);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("invalid cursor");
+    }
+  }
+
+  /**
+   * Restricts the query to the page of at most {@code limit} entities starting at the given cursor.
+   */
+  static void setPage(Query query, Cursor cursor, int limit) {
+    query.setMaxResults(limit);
+    if (cursor != null) {
+      query.setHint(JPACursorHelper.CURSOR_HINT, cursor);
+    }
+  }
+
+  /**
+   * Returns the web-safe cursor positioned after the given query results, or {@code null} if the
+   * page was not full and therefore is the last one.
+   */
+  static String nextCursor(List<?> results, int limit) {
+    if (results.size() < limit) {
+      return null;
+    }
+    return JPACursorHelper.getCursor(results).toWebSafeString();
+  }
+}
@@ -294,6 +294,37 @@ public class Deviceinfoendpoint extends GoogleClient {
       return this;
     }
 
+    @com.google.api.client.util.Key
+    private Integer limit;
+
+    /**
+
+     */
+    public Integer getLimit() {
+      return limit;
+    }
+
+
+    public ListDeviceInfo setLimit(Integer limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    @com.google.api.client.util.Key
+    private String cursor;
+
+    /**
+
+     */
+    public String getCursor() {
+      return cursor;
+    }
+
+
+    public ListDeviceInfo setCursor(String cursor) {
+      this.cursor = cursor;
+      return this;
+    }
 
 
   }
@@ -39,6 +39,12 @@ public final class DeviceInfo extends GenericJson {
   @com.google.api.client.util.Key
   private String deviceRegistrationID;
 
+  /**
+   * The value may be {@code null}.
+   */
+  @com.google.api.client.util.Key
+  private String emailAddress;
+
 
 
 
@@ -59,6 +65,23 @@ public final class DeviceInfo extends GenericJson {
     return this;
   }
 
+  /**
+
+   * The value returned may be {@code null}.
+   */
+  public String getEmailAddress() {
+    return emailAddress;
+  }
+
+  /**
+
+   * The value set may be {@code null}.
+   */
+  public DeviceInfo setEmailAddress(String emailAddress) {
+    this.emailAddress = emailAddress;
+    return this;
+  }
+
 
   private HttpHeaders responseHeaders;
 
@@ -382,6 +382,160 @@ public class Noteendpoint extends GoogleClient {
       return this;
     }
 
+    @com.google.api.client.util.Key
+    private Integer limit;
+
+    /**
+
+     */
+    public Integer getLimit() {
+      return limit;
+    }
+
+
+    public ListNote setLimit(Integer limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    @com.google.api.client.util.Key
+    private String cursor;
+
+    /**
+
+     */
+    public String getCursor() {
+      return cursor;
+    }
+
+
+    public ListNote setCursor(String cursor) {
+      this.cursor = cursor;
+      return this;
+    }
+
+
+  }
+
+  /**
+   * Create a request for the method "listNoteChanges".
+   *
+   * This request holds the parameters needed by the the noteendpoint server.  After setting any
+   * optional parameters, call the {@link ListNoteChanges#execute()} method to invoke the remote
+   * operation.
+   *
+   * @param since
+   * @return the request
+   * @throws IOException if the initialization of the request fails
+   */
+  public ListNoteChanges listNoteChanges(Long since) throws IOException {
+    ListNoteChanges result = new ListNoteChanges(since);
+    initialize(result);
+    return result;
+  }
+
+
+  public class ListNoteChanges extends NoteendpointRequest {
+
+    private static final String REST_PATH = "notechanges";
+
+    /**
+     * Internal constructor.  Use the convenience method instead.
+     */
+    ListNoteChanges(Long since) {
+      super(Noteendpoint.this, HttpMethod.GET, REST_PATH, null);
+      this.since = Preconditions.checkNotNull(since, "Required parameter since must be specified.");
+    }
+
+
+
+    /**
+     * Sends the "listNoteChanges" request to the Noteendpoint server.
+     *
+     * @return the {@link com.appspot.api.services.noteendpoint.model.NoteChanges} response
+     * @throws IOException if the request fails
+     */
+    public com.appspot.api.services.noteendpoint.model.NoteChanges execute() throws IOException {
+      HttpResponse response = executeUnparsed();
+      com.appspot.api.services.noteendpoint.model.NoteChanges result = response.parseAs(
+          com.appspot.api.services.noteendpoint.model.NoteChanges.class);
+      result.setResponseHeaders(response.getHeaders());
+      return result;
+    }
+
+    /**
+     * Queues the "listNoteChanges" request to the Noteendpoint server into the given batch request.
+     *
+     * <p>
+     * Example usage:
+     * </p>
+     *
+     * <pre>
+       request.queue(batchRequest, new JsonBatchCallback&lt;NoteChanges&gt;() {
+
+         public void onSuccess(NoteChanges content, GoogleHeaders responseHeaders) {
+           log("Success");
+         }
+
+         public void onFailure(GoogleJsonError e, GoogleHeaders responseHeaders) {
+           log(e.getMessage());
+         }
+       });
+     * </pre>
+     *
+     * @param batch a single batch of requests
+     * @param callback batch callback
+     * @since 1.6
+     */
+    public void queue(com.google.api.client.googleapis.batch.BatchRequest batch,
+        com.google.api.client.googleapis.batch.json.JsonBatchCallback<com.appspot.api.services.noteendpoint.model.NoteChanges> callback)
+        throws IOException {
+      batch.queue(buildHttpRequest(), com.appspot.api.services.noteendpoint.model.NoteChanges.class,
+          com.google.api.client.googleapis.json.GoogleJsonErrorContainer.class, callback);
+    }
+
+    /**
+     * @since 1.7
+     */
+    @Override
+    public ListNoteChanges setFields(String fields) {
+      super.setFields(fields);
+      return this;
+    }
+
+
+    @com.google.api.client.util.Key
+    private Long since;
+
+    /**
+
+     */
+    public Long getSince() {
+      return since;
+    }
+
+
+    public ListNoteChanges setSince(Long since) {
+      this.since = since;
+      return this;
+    }
+
+    @com.google.api.client.util.Key
+    private String pageToken;
+
+    /**
+
+     */
+    public String getPageToken() {
+      return pageToken;
+    }
+
+
+    public ListNoteChanges setPageToken(String pageToken) {
+      this.pageToken = pageToken;
+      return this;
+    }
+
 
 
   }
@@ -473,6 +627,273 @@ public class Noteendpoint extends GoogleClient {
 
 
 
+  }
+
+  /**
+   * Create a request for the method "insertNotes".
+   *
+   * This request holds the parameters needed by the the noteendpoint server.  After setting any
+   * optional parameters, call the {@link InsertNotes#execute()} method to invoke the remote operation.
+   *
+   * @param content the {@link com.appspot.api.services.noteendpoint.model.NoteBatch}
+   * @return the request
+   * @throws IOException if the initialization of the request fails
+   */
+  public InsertNotes insertNotes(com.appspot.api.services.noteendpoint.model.NoteBatch content) throws IOException {
+    InsertNotes result = new InsertNotes(content);
+    initialize(result);
+    return result;
+  }
+
+
+  public class InsertNotes extends NoteendpointRequest {
+
+    private static final String REST_PATH = "notes/insert";
+
+    /**
+     * Internal constructor.  Use the convenience method instead.
+     */
+    InsertNotes(com.appspot.api.services.noteendpoint.model.NoteBatch content) {
+      super(Noteendpoint.this, HttpMethod.POST, REST_PATH, content);
+      Preconditions.checkNotNull(content);
+    }
+
+
+
+    /**
+     * Sends the "insertNotes" request to the Noteendpoint server.
+     *
+     * @return the {@link com.appspot.api.services.noteendpoint.model.NoteResults} response
+     * @throws IOException if the request fails
+     */
+    public com.appspot.api.services.noteendpoint.model.NoteResults execute() throws IOException {
+      HttpResponse response = executeUnparsed();
+      com.appspot.api.services.noteendpoint.model.NoteResults result = response.parseAs(
+          com.appspot.api.services.noteendpoint.model.NoteResults.class);
+      result.setResponseHeaders(response.getHeaders());
+      return result;
+    }
+
+    /**
+     * Queues the "insertNotes" request to the Noteendpoint server into the given batch request.
+     *
+     * <p>
+     * Example usage:
+     * </p>
+     *
+     * <pre>
+       request.queue(batchRequest, new JsonBatchCallback&lt;NoteResults&gt;() {
+
+         public void onSuccess(NoteResults content, GoogleHeaders responseHeaders) {
+           log("Success");
+         }
+
+         public void onFailure(GoogleJsonError e, GoogleHeaders responseHeaders) {
+           log(e.getMessage());
+         }
+       });
+     * </pre>
+     *
+     * @param batch a single batch of requests
+     * @param callback batch callback
+     * @since 1.6
+     */
+    public void queue(com.google.api.client.googleapis.batch.BatchRequest batch,
+        com.google.api.client.googleapis.batch.json.JsonBatchCallback<com.appspot.api.services.noteendpoint.model.NoteResults> callback)
+        throws IOException {
+      batch.queue(buildHttpRequest(), com.appspot.api.services.noteendpoint.model.NoteResults.class,
+          com.google.api.client.googleapis.json.GoogleJsonErrorContainer.class, callback);
+    }
+
+    /**
+     * @since 1.7
+     */
+    @Override
+    public InsertNotes setFields(String fields) {
+      super.setFields(fields);
+      return this;
+    }
+
+
+
+  }
+
+  /**
+   * Create a request for the method "updateNotes".
+   *
+   * This request holds the parameters needed by the the noteendpoint server.  After setting any
+   * optional parameters, call the {@link UpdateNotes#execute()} method to invoke the remote operation.
+   *
+   * @param content the {@link com.appspot.api.services.noteendpoint.model.NoteBatch}
+   * @return the request
+   * @throws IOException if the initialization of the request fails
+   */
+  public UpdateNotes updateNotes(com.appspot.api.services.noteendpoint.model.NoteBatch content) throws IOException {
+    UpdateNotes result = new UpdateNotes(content);
+    initialize(result);
+    return result;
+  }
+
+
+  public class UpdateNotes extends NoteendpointRequest {
+
+    private static final String REST_PATH = "notes/update";
+
+    /**
+     * Internal constructor.  Use the convenience method instead.
+     */
+    UpdateNotes(com.appspot.api.services.noteendpoint.model.NoteBatch content) {
+      super(Noteendpoint.this, HttpMethod.POST, REST_PATH, content);
+      Preconditions.checkNotNull(content);
+    }
+
+
+
+    /**
+     * Sends the "updateNotes" request to the Noteendpoint server.
+     *
+     * @return the {@link com.appspot.api.services.noteendpoint.model.NoteResults} response
+     * @throws IOException if the request fails
+     */
+    public com.appspot.api.services.noteendpoint.model.NoteResults execute() throws IOException {
+      HttpResponse response = executeUnparsed();
+      com.appspot.api.services.noteendpoint.model.NoteResults result = response.parseAs(
+          com.appspot.api.services.noteendpoint.model.NoteResults.class);
+      result.setResponseHeaders(response.getHeaders());
+      return result;
+    }
+
+    /**
+     * Queues the "updateNotes" request to the Noteendpoint server into the given batch request.
+     *
+     * <p>
+     * Example usage:
+     * </p>
+     *
+     * <pre>
+       request.queue(batchRequest, new JsonBatchCallback&lt;NoteResults&gt;() {
+
+         public void onSuccess(NoteResults content, GoogleHeaders responseHeaders) {
+           log("Success");
+         }
+
+         public void onFailure(GoogleJsonError e, GoogleHeaders responseHeaders) {
+           log(e.getMessage());
+         }
+       });
+     * </pre>
+     *
+     * @param batch a single batch of requests
+     * @param callback batch callback
+     * @since 1.6
+     */
+    public void queue(com.google.api.client.googleapis.batch.BatchRequest batch,
+        com.google.api.client.googleapis.batch.json.JsonBatchCallback<com.appspot.api.services.noteendpoint.model.NoteResults> callback)
+        throws IOException {
+      batch.queue(buildHttpRequest(), com.appspot.api.services.noteendpoint.model.NoteResults.class,
+          com.google.api.client.googleapis.json.GoogleJsonErrorContainer.class, callback);
+    }
+
+    /**
+     * @since 1.7
+     */
+    @Override
+    public UpdateNotes setFields(String fields) {
+      super.setFields(fields);
+      return this;
+    }
+
+
+
+  }
+
+  /**
+   * Create a request for the method "removeNotes".
+   *
+   * This request holds the parameters needed by the the noteendpoint server.  After setting any
+   * optional parameters, call the {@link RemoveNotes#execute()} method to invoke the remote operation.
+   *
+   * @param content the {@link com.appspot.api.services.noteendpoint.model.NoteIds}
+   * @return the request
+   * @throws IOException if the initialization of the request fails
+   */
+  public RemoveNotes removeNotes(com.appspot.api.services.noteendpoint.model.NoteIds content) throws IOException {
+    RemoveNotes result = new RemoveNotes(content);
+    initialize(result);
+    return result;
+  }
+
+
+  public class RemoveNotes extends NoteendpointRequest {
+
+    private static final String REST_PATH = "notes/remove";
+
+    /**
+     * Internal constructor.  Use the convenience method instead.
+     */
+    RemoveNotes(com.appspot.api.services.noteendpoint.model.NoteIds content) {
+      super(Noteendpoint.this, HttpMethod.POST, REST_PATH, content);
+      Preconditions.checkNotNull(content);
+    }
+
+
+
+    /**
+     * Sends the "removeNotes" request to the Noteendpoint server.
+     *
+     * @return the {@link com.appspot.api.services.noteendpoint.model.NoteResults} response
+     * @throws IOException if the request fails
+     */
+    public com.appspot.api.services.noteendpoint.model.NoteResults execute() throws IOException {
+      HttpResponse response = executeUnparsed();
+      com.appspot.api.services.noteendpoint.model.NoteResults result = response.parseAs(
+          com.appspot.api.services.noteendpoint.model.NoteResults.class);
+      result.setResponseHeaders(response.getHeaders());
+      return result;
+    }
+
+    /**
+     * Queues the "removeNotes" request to the Noteendpoint server into the given batch request.
+     *
+     * <p>
+     * Example usage:
+     * </p>
+     *
+     * <pre>
+       request.queue(batchRequest, new JsonBatchCallback&lt;NoteResults&gt;() {
+
+         public void onSuccess(NoteResults content, GoogleHeaders responseHeaders) {
+           log("Success");
+         }
+
+         public void onFailure(GoogleJsonError e, GoogleHeaders responseHeaders) {
+           log(e.getMessage());
+         }
+       });
+     * </pre>
+     *
+     * @param batch a single batch of requests
+     * @param callback batch callback
+     * @since 1.6
+     */
+    public void queue(com.google.api.client.googleapis.batch.BatchRequest batch,
+        com.google.api.client.googleapis.batch.json.JsonBatchCallback<com.appspot.api.services.noteendpoint.model.NoteResults> callback)
+        throws IOException {
+      batch.queue(buildHttpRequest(), com.appspot.api.services.noteendpoint.model.NoteResults.class,
+          com.google.api.client.googleapis.json.GoogleJsonErrorContainer.class, callback);
+    }
+
+    /**
+     * @since 1.7
+     */
+    @Override
+    public RemoveNotes setFields(String fields) {
+      super.setFields(fields);
+      return this;
+    }
+
+
+
   }
 
   /**
@@ -57,6 +57,22 @@ public final class Note extends GenericJson {
 
 
 
+  /**
+   * The value may be {@code null}.
+   */
+  @com.google.api.client.util.Key
+  private Boolean deleted;
+
+
+
+  /**
+   * The value may be {@code null}.
+   */
+  @com.google.api.client.util.Key @com.google.api.client.json.JsonString
+  private Long updated;
+
+
+
 
   /**
 
@@ -109,6 +125,40 @@ public final class Note extends GenericJson {
     return this;
   }
 
+  /**
+
+   * The value returned may be {@code null}.
+   */
+  public Boolean getDeleted() {
+    return deleted;
+  }
+
+  /**
+
+   * The value set may be {@code null}.
+   */
+  public Note setDeleted(Boolean deleted) {
+    this.deleted = deleted;
+    return this;
+  }
+
+  /**
+
+   * The value returned may be {@code null}.
+   */
+  public Long getUpdated() {
+    return updated;
+  }
+
+  /**
+
+   * The value set may be {@code null}.
+   */
+  public Note setUpdated(Long updated) {
+    this.updated = updated;
+    return this;
+  }
+
 
   private HttpHeaders responseHeaders;
 
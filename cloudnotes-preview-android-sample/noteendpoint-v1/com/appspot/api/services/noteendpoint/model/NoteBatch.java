@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+/*
+ * Warning! This file is generated. Modify at your own risk.
+ */
+
+package com.appspot.api.services.noteendpoint.model;
+
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.json.GenericJson;
+
+
+/**
+ * Model definition for NoteBatch.
+ *
+ * <p> This is the Java data model class that specifies how to parse/serialize into the JSON that is
+ * transmitted over HTTP when working with the . For a detailed explanation see:
+ * <a href="http://code.google.com/p/google-api-java-client/wiki/Json">http://code.google.com/p/google-api-java-client/wiki/Json</a>
+ * </p>
+ *
+ * @author Google, Inc.
+ */
+public final class NoteBatch extends GenericJson {
+
+
+  /**
+   * The value may be {@code null}.
+   */
+  @com.google.api.client.util.Key
+  private java.util.List<Note> items;
+
+  static {
+    // hack to force ProGuard to consider Note used, since otherwise it would be stripped out
+    // see http://code.google.com/p/google-api-java-client/issues/detail?id=528
+    com.google.api.client.util.Data.nullOf(Note.class);
+  }
+
+
+  /**
+
+   * The value returned may be {@code null}.
+   */
+  public java.util.List<Note> getItems() {
+    return items;
+  }
+
+  /**
+
+   * The value set may be {@code null}.
+   */
+  public NoteBatch setItems(java.util.List<Note> items) {
+    this.items = items;
+    return this;
+  }
+
+
+  private HttpHeaders responseHeaders;
+
+  /**
+   * Sets the HTTP headers returned with the server response, or <code>null</code>.
+   *
+   * This member should only be non-null if this object was the top level element of a response. For
+   * example, a request that returns a single {@link NoteBatch} would include the response headers,
+   * while a request which returns an array of {@link NoteBatch}, would have a non-null response header
+   * in the enclosing object only.
+   */
+  public void setResponseHeaders(HttpHeaders responseHeaders) {
+    this.responseHeaders = responseHeaders;
+  }
+
+  /**
+   * Returns the HTTP headers that were returned with the server response, or
+   * <code>null</code>.
+   */
+  public HttpHeaders getResponseHeaders() {
+    return responseHeaders;
+  }
+
+}
@@ -46,6 +46,14 @@ public final class Notes extends GenericJson {
   }
 
 
+
+  /**
+   * The value may be {@code null}.
+   */
+  @com.google.api.client.util.Key
+  private String nextPageToken;
+
+
   /**
 
    * The value returned may be {@code null}.
@@ -63,6 +71,23 @@ public final class Notes extends GenericJson {
     return this;
   }
 
+  /**
+
+   * The value returned may be {@code null}.
+   */
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+
+  /**
+
+   * The value set may be {@code null}.
+   */
+  public Notes setNextPageToken(String nextPageToken) {
+    this.nextPageToken = nextPageToken;
+    return this;
+  }
+
 
   private HttpHeaders responseHeaders;
 
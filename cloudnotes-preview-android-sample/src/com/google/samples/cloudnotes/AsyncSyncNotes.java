@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.samples.cloudnotes;
+
+import com.appspot.api.services.noteendpoint.model.Note;
+import com.appspot.api.services.noteendpoint.model.NoteBatch;
+import com.appspot.api.services.noteendpoint.model.NoteChanges;
+import com.appspot.api.services.noteendpoint.model.NoteIds;
+import com.appspot.api.services.noteendpoint.model.NoteResult;
+import com.appspot.api.services.noteendpoint.model.NoteResults;
+import com.google.samples.cloudnotes.NoteStore.PendingChange;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the local changes queued in the {@link NoteStore} to the server in batches, then fetches
+ * the notes that changed on the server since the last sync into the store and the adapter.
+ * 
+ * <p>
+ * A change stays queued until the server has handled it, so a sync that fails, for example while
+ * the device is offline, is simply retried later; see {@link CloudNotesActivity#requestSync}.
+ * </p>
+ */
+class AsyncSyncNotes extends CloudAsyncTask {
+
+  /** Maximum number of changes sent per batch call, the server's batch limit. */
+  private static final int BATCH_SIZE = 500;
+
+  AsyncSyncNotes(CloudNotesActivity activity) {
+    super(activity);
+  }
+
+  @Override
+  protected void doInBackground() throws IOException {
+    NoteApplication app = (NoteApplication) activity.getApplication();
+    NoteStore store = app.getStore();
+    String account = app.getEmailAddress();
+    if (account == null) {
+      return;
+    }
+    sendPendingChanges(store, account);
+    fetchChanges(store, account);
+  }
+
+  private void sendPendingChanges(NoteStore store, String account) throws IOException {
+    List<PendingChange> changes;
+    while (!(changes = store.getPendingChanges(account, BATCH_SIZE)).isEmpty()) {
+      List<Note> inserts = new ArrayList<Note>();
+      List<Note> updates = new ArrayList<Note>();
+      List<String> removes = new ArrayList<String>();
+      for (PendingChange change : changes) {
+        if (NoteStore.OPERATION_INSERT.equals(change.operation)) {
+          inserts.add(change.toNote());
+        } else if (NoteStore.OPERATION_UPDATE.equals(change.operation)) {
+          updates.add(change.toNote());
+        } else {
+          removes.add(change.id);
+        }
+      }
+      if (!inserts.isEmpty()) {
+        logErrors(endpoint.insertNotes(new NoteBatch().setItems(inserts)).execute());
+      }
+      if (!updates.isEmpty()) {
+        logErrors(endpoint.updateNotes(new NoteBatch().setItems(updates)).execute());
+      }
+      if (!removes.isEmpty()) {
+        logErrors(endpoint.removeNotes(new NoteIds().setIds(removes)).execute());
+      }
+      // the notes as stored by the server come back with the delta sync
+      store.removePendingChanges(changes);
+    }
+  }
+
+  /**
+   * Logs the changes the server rejected. Retrying them would fail again, so they are dropped; the
+   * next full sync restores the server's version of the note.
+   */
+  private static void logErrors(NoteResults results) {
+    if (results.getItems() != null) {
+      for (NoteResult result : results.getItems()) {
+        if (result.getError() != null) {
+          Log.w(CloudNotesActivity.TAG, "note " + result.getId() + ": " + result.getError());
+        }
+      }
+    }
+  }
+
+  /**
+   * Fetches only the notes that changed since the last sync, or all notes if there was none, and
+   * applies them to the store and the adapter.
+   */
+  private void fetchChanges(NoteStore store, String account) throws IOException {
+    long since = store.getSyncTime(account);
+    String pageToken = null;
+    NoteChanges changes;
+    do {
+      changes = endpoint.listNoteChanges(since).setPageToken(pageToken).execute();
+      boolean replaceAll = since == 0 && pageToken == null;
+      List<Note> applied = store.applyRemoteChanges(account, changes.getItems(), replaceAll);
+      if (replaceAll) {
+        adapter.setTasks(store.loadNotes(account));
+      } else {
+        adapter.applyChanges(applied);
+      }
+      pageToken = changes.getNextPageToken();
+    } while (pageToken != null);
+    store.setSyncTime(account, changes.getSyncTime());
+  }
+
+  @Override
+  protected void onPostExecute(Boolean success) {
+    super.onPostExecute(success);
+    activity.onSyncFinished(success);
+  }
+}
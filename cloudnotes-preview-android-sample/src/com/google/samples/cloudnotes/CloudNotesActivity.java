@@ -24,7 +24,10 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.Menu;
@@ -34,6 +37,8 @@ import android.view.View;
 import android.widget.AdapterView.AdapterContextMenuInfo;
 import android.widget.ListView;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,14 +86,71 @@ public class CloudNotesActivity extends Activity {
 
   int numAsyncTasks;
 
+  /** Delay before the first retry of a failed sync, doubled for each further failure. */
+  private static final long MIN_SYNC_RETRY_MILLIS = 5 * 1000;
+
+  /** Longest delay between two retries of a failed sync. */
+  private static final long MAX_SYNC_RETRY_MILLIS = 5 * 60 * 1000;
+
+  private final Handler handler = new Handler();
+
+  private final Runnable syncRunnable = new Runnable() {
+    public void run() {
+      requestSync();
+    }
+  };
+
+  /** Whether an {@link AsyncSyncNotes} is running. */
+  private boolean syncRunning;
+
+  /** Whether another sync was requested while one was running. */
+  private boolean syncRequested;
+
+  private long syncRetryMillis = MIN_SYNC_RETRY_MILLIS;
+
+  /**
+   * How long note change notifications are collected before the changes are fetched with a single
+   * delta sync.
+   */
+  private static final long NOTIFICATION_WINDOW_MILLIS = 1000;
+
+  /** Whether a notification window is open, so that its changes are yet to be fetched. */
+  private boolean fetchPending;
+
+  private final Runnable fetchChangesRunnable = new Runnable() {
+    public void run() {
+      fetchPending = false;
+      requestSync();
+    }
+  };
+
+  /** A change made on this device that is not yet written to the local store. */
+  private static final class LocalChange {
+    final String account;
+    final String id;
+    final String operation;
+    final String description;
+
+    LocalChange(String account, String id, String operation, String description) {
+      this.account = account;
+      this.id = id;
+      this.operation = operation;
+      this.description = description;
+    }
+  }
+
+  /** Local changes not yet written to the store, oldest first. */
+  private final List<LocalChange> unsavedChanges = new ArrayList<LocalChange>();
+
+  /** Whether local changes are being written to the store. */
+  private boolean savingChanges;
+
   /** Called when the activity is first created. */
   @Override
   public void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     // enable logging
     Logger.getLogger("com.google.api.client").setLevel(LOGGING_LEVEL);
-    // Enable Google Cloud Messaging
-    GCMIntentService.register(getApplicationContext());
     // get the task application to store the adapter which will act as the task
     // storage for this demo
     setContentView(R.layout.tasklist);
@@ -102,17 +164,28 @@ public class CloudNotesActivity extends Activity {
     credential = GoogleAccountCredential.usingAudience(this, Ids.AUDIENCE);
     SharedPreferences settings = getPreferences(Context.MODE_PRIVATE);
     setAccountName(settings.getString(PREF_ACCOUNT_NAME, null));
+    // Enable Google Cloud Messaging once the account, which owns this device's pings, is known
+    if (credential.getAccountName() != null) {
+      GCMIntentService.register(getApplicationContext());
+    }
     // set up the Note endpoint
     Noteendpoint.Builder builder =
         new Noteendpoint.Builder(AndroidHttp.newCompatibleTransport(), new GsonFactory(),
             credential);
     noteendpoint = Utils.updateBuilder(getResources(), builder).build();
-    // if we already have an account, go ahead and fetch tasks now
+    // if we already have an account, show the stored notes right away and sync them
     if (credential.getAccountName() != null) {
-      fetchTasks();
+      showStoredNotesAndSync();
     }
   }
 
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    handler.removeCallbacks(syncRunnable);
+    handler.removeCallbacks(fetchChangesRunnable);
+  }
+
   @Override
   public boolean onCreateOptionsMenu(Menu menu) {
     MenuInflater inflater = getMenuInflater();
@@ -151,7 +224,7 @@ public class CloudNotesActivity extends Activity {
           startAddOrEditTaskActivity(note);
           return true;
         case CONTEXT_DELETE:
-          new AsyncDeleteNote(this, note).execute();
+          saveLocalChange(note.getId(), NoteStore.OPERATION_REMOVE, null);
           return true;
       }
     }
@@ -163,21 +236,12 @@ public class CloudNotesActivity extends Activity {
     super.onResume();
     NoteApplication taskApplication = (NoteApplication) getApplication();
     taskApplication.setTaskListener(new TaskListener() {
-      public void onTaskUpdated(final String id, String operation) {
-        if (operation.equals("remove")) {
-          adapter.removeTask(id);
-          runOnUiThread(new Runnable() {
-            public void run() {
-              adapter.notifyDataSetChanged();
-            }
-          });
-        } else {
-          runOnUiThread(new Runnable() {
-            public void run() {
-              new AsyncFetchNote(CloudNotesActivity.this, id).execute();
-            }
-          });
-        }
+      public void onTaskUpdated(String id, String operation) {
+        runOnUiThread(new Runnable() {
+          public void run() {
+            onNoteChanged();
+          }
+        });
       }
     });
     if (credential.getAccountName() == null) {
@@ -197,7 +261,129 @@ public class CloudNotesActivity extends Activity {
   }
 
   public void fetchTasks() {
-    new AsyncFetchNotes(this).execute();
+    requestSync();
+  }
+
+  /**
+   * Called on the UI thread for each GCM ping about a changed note. The first ping opens a window
+   * of {@link #NOTIFICATION_WINDOW_MILLIS}; all notes changed until it closes are fetched and
+   * applied to the list by one delta sync, so that a burst of changes costs one request instead of
+   * one per note.
+   */
+  private void onNoteChanged() {
+    if (!fetchPending) {
+      fetchPending = true;
+      handler.postDelayed(fetchChangesRunnable, NOTIFICATION_WINDOW_MILLIS);
+    }
+  }
+
+  /**
+   * Starts an {@link AsyncSyncNotes} unless one is running, in which case another one is started
+   * when it finishes.
+   */
+  void requestSync() {
+    handler.removeCallbacks(syncRunnable);
+    if (credential.getAccountName() == null) {
+      return;
+    }
+    if (syncRunning) {
+      syncRequested = true;
+      return;
+    }
+    syncRunning = true;
+    syncRequested = false;
+    new AsyncSyncNotes(this).execute();
+  }
+
+  /**
+   * Called by {@link AsyncSyncNotes} when it finished. A failed sync is retried with exponential
+   * backoff; the local changes stay queued meanwhile.
+   */
+  void onSyncFinished(boolean success) {
+    syncRunning = false;
+    if (success) {
+      syncRetryMillis = MIN_SYNC_RETRY_MILLIS;
+      if (syncRequested) {
+        requestSync();
+      }
+    } else {
+      handler.postDelayed(syncRunnable, syncRetryMillis);
+      syncRetryMillis = Math.min(2 * syncRetryMillis, MAX_SYNC_RETRY_MILLIS);
+    }
+  }
+
+  /**
+   * Shows the notes of the current account kept in the local store, which are read in the
+   * background, and then syncs them. The sync only starts once the stored notes are shown, so that
+   * they do not replace the notes it applies.
+   */
+  private void showStoredNotesAndSync() {
+    final NoteApplication app = (NoteApplication) getApplication();
+    final String account = app.getEmailAddress();
+    new AsyncTask<Void, Void, List<Note>>() {
+
+      @Override
+      protected List<Note> doInBackground(Void... ignored) {
+        return app.getStore().loadNotes(account);
+      }
+
+      @Override
+      protected void onPostExecute(List<Note> notes) {
+        adapter.setTasks(notes);
+        adapter.notifyDataSetChanged();
+        fetchTasks();
+      }
+    }.execute();
+  }
+
+  /**
+   * Applies a change made on this device to the list, and to the local store in the background,
+   * where it is queued to be sent to the server by the next sync.
+   */
+  private void saveLocalChange(String id, String operation, String description) {
+    NoteApplication app = (NoteApplication) getApplication();
+    unsavedChanges.add(new LocalChange(app.getEmailAddress(), id, operation, description));
+    if (NoteStore.OPERATION_REMOVE.equals(operation)) {
+      adapter.removeTask(id);
+    } else {
+      adapter.addTask(new Note().setId(id).setDescription(description));
+    }
+    adapter.notifyDataSetChanged();
+    saveChanges();
+  }
+
+  /**
+   * Writes the unsaved local changes to the store in the background, then requests a sync to send
+   * them. Only one write runs at a time, so that changes to the same note are stored in order.
+   */
+  private void saveChanges() {
+    if (savingChanges || unsavedChanges.isEmpty()) {
+      return;
+    }
+    savingChanges = true;
+    final List<LocalChange> changes = new ArrayList<LocalChange>(unsavedChanges);
+    unsavedChanges.clear();
+    final NoteStore store = ((NoteApplication) getApplication()).getStore();
+    new AsyncTask<Void, Void, Void>() {
+
+      @Override
+      protected Void doInBackground(Void... ignored) {
+        for (LocalChange change : changes) {
+          store.enqueue(change.account, change.id, change.operation, change.description);
+        }
+        return null;
+      }
+
+      @Override
+      protected void onPostExecute(Void ignored) {
+        savingChanges = false;
+        if (unsavedChanges.isEmpty()) {
+          requestSync();
+        } else {
+          saveChanges();
+        }
+      }
+    }.execute();
   }
 
   public void onAddClick(View view) {
@@ -239,21 +425,19 @@ public class CloudNotesActivity extends Activity {
             SharedPreferences.Editor editor = settings.edit();
             editor.putString(PREF_ACCOUNT_NAME, accountName);
             editor.commit();
-            fetchTasks();
+            GCMIntentService.register(getApplicationContext());
+            showStoredNotesAndSync();
           }
         }
         break;
       case ADD_OR_EDIT_TASK_REQUEST:
         if (resultCode == Activity.RESULT_OK) {
-          Note addOrEditTask = new Note();
-          addOrEditTask.setDescription(data.getStringExtra("task"));
           String id = data.getStringExtra("id");
           if (id == null) {
-            addOrEditTask.setId(Long.toString(System.currentTimeMillis()));
-            new AsyncAddNote(this, addOrEditTask).execute();
+            saveLocalChange(Long.toString(System.currentTimeMillis()), NoteStore.OPERATION_INSERT,
+                data.getStringExtra("task"));
           } else {
-            addOrEditTask.setId(id);
-            new AsyncEditNote(this, addOrEditTask).execute();
+            saveLocalChange(id, NoteStore.OPERATION_UPDATE, data.getStringExtra("task"));
           }
         }
         break;
@@ -39,7 +39,8 @@ public class GCMIntentService extends GCMBaseIntentService {
   private static final String PROJECT_ID = "816816158367";
 
   /**
-   * Register the device for GCM.
+   * Register the device for GCM. This also (re-)registers the device with the server under the
+   * application's current email address, so it should be called again when the account changes.
    * 
    * @param mContext the activity's context.
    */
@@ -98,8 +99,11 @@ public class GCMIntentService extends GCMBaseIntentService {
   public void onRegistered(Context context, String registration) {
     try {
       Log.i(CloudNotesActivity.TAG, "Registered Device Start:" + registration);
+      // the owner lets the server ping only this user's devices when one of their notes changes
+      String emailAddress = ((NoteApplication) getApplication()).getEmailAddress();
       getDeviceinfoendpoint().insertDeviceInfo(
-          new DeviceInfo().setDeviceRegistrationID(registration)).execute();
+          new DeviceInfo().setDeviceRegistrationID(registration).setEmailAddress(emailAddress))
+          .execute();
       Log.i(CloudNotesActivity.TAG, "Registered Device End:" + registration);
     } catch (IOException e) {
       e.printStackTrace();
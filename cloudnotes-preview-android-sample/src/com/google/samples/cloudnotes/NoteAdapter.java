@@ -23,13 +23,25 @@ import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 
 /**
+ * Adapter of the notes sorted by description.
+ * 
+ * <p>
+ * Writers, which may run on background threads, keep an index of the notes by id and find the
+ * position of a changed note by binary search instead of scanning and re-sorting the whole list.
+ * Each write publishes a new sorted array rather than modifying the current one, and
+ * {@link #notifyDataSetChanged()}, called on the UI thread, makes the latest array the one the list
+ * shows. The list therefore reads its notes without locking and never sees a change before it has
+ * been notified of it.
+ * </p>
+ * 
  * @author Sriram Saroop
  */
 class NoteAdapter extends BaseAdapter {
@@ -38,13 +50,28 @@ class NoteAdapter extends BaseAdapter {
     TextView title;
   }
 
-  private Comparator<Note> taskComparator = new Comparator<Note>() {
+  /** Orders notes by description, and notes with the same description by id. */
+  private static final Comparator<Note> NOTE_ORDER = new Comparator<Note>() {
     public int compare(Note object1, Note object2) {
-      return object1.getDescription().compareTo(object2.getDescription());
+      int result = object1.getDescription().compareTo(object2.getDescription());
+      return result != 0 ? result : object1.getId().compareTo(object2.getId());
     }
   };
 
-  private final List<Note> items = new ArrayList<Note>();
+  private static final Note[] NO_NOTES = new Note[0];
+
+  /** Guards {@link #notesById} and the writes of {@link #notes}. */
+  private final Object writeLock = new Object();
+
+  /** Notes by id; contains exactly the notes of {@link #notes}. */
+  private final Map<String, Note> notesById = new HashMap<String, Note>();
+
+  /** Latest sorted notes. The array is never modified once published. */
+  private volatile Note[] notes = NO_NOTES;
+
+  /** Sorted notes shown by the list, only accessed on the UI thread. */
+  private Note[] shownNotes = NO_NOTES;
+
   private final LayoutInflater inflater;
 
   NoteAdapter(Context context) {
@@ -52,54 +79,120 @@ class NoteAdapter extends BaseAdapter {
   }
 
   void setTasks(List<Note> tasks) {
-    synchronized (this.items) {
-      items.clear();
+    synchronized (writeLock) {
+      notesById.clear();
       if (tasks != null) {
-        items.addAll(tasks);
-        Collections.sort(items, taskComparator);
+        for (Note task : tasks) {
+          if (!isDeleted(task)) {
+            notesById.put(task.getId(), task);
+          }
+        }
       }
+      Note[] sorted = notesById.values().toArray(new Note[notesById.size()]);
+      Arrays.sort(sorted, NOTE_ORDER);
+      notes = sorted;
     }
   }
 
-  void removeTask(String id) {
-    synchronized (items) {
-      for (Iterator<Note> it = items.iterator(); it.hasNext();) {
-        if (id.equalsIgnoreCase(it.next().getId())) {
-          it.remove();
-          break;
+  /**
+   * Applies notes returned by a delta sync: tombstones remove the note, other notes are added or
+   * replace the note with the same id. Only the changed notes are sorted; they are then merged with
+   * the unchanged ones in a single pass.
+   */
+  void applyChanges(List<Note> changes) {
+    if (changes == null || changes.isEmpty()) {
+      return;
+    }
+    synchronized (writeLock) {
+      // the last change to a note wins
+      Map<String, Note> changesById = new LinkedHashMap<String, Note>();
+      for (Note change : changes) {
+        changesById.put(change.getId(), change);
+      }
+      List<Note> added = new ArrayList<Note>();
+      for (Note change : changesById.values()) {
+        if (isDeleted(change)) {
+          notesById.remove(change.getId());
+        } else {
+          notesById.put(change.getId(), change);
+          added.add(change);
         }
       }
-      Collections.sort(items, taskComparator);
+      Note[] sortedAdded = added.toArray(new Note[added.size()]);
+      Arrays.sort(sortedAdded, NOTE_ORDER);
+
+      Note[] current = notes;
+      Note[] merged = new Note[notesById.size()];
+      int i = 0;
+      int j = 0;
+      int k = 0;
+      while (i < current.length || j < sortedAdded.length) {
+        if (i < current.length && changesById.containsKey(current[i].getId())) {
+          i++;
+        } else if (j == sortedAdded.length
+            || (i < current.length && NOTE_ORDER.compare(current[i], sortedAdded[j]) < 0)) {
+          merged[k++] = current[i++];
+        } else {
+          merged[k++] = sortedAdded[j++];
+        }
+      }
+      notes = merged;
     }
   }
 
-  void addTask(Note item) {
-    synchronized (items) {
-      boolean found = false;
-      for (ListIterator<Note> it = items.listIterator(); it.hasNext();) {
-        if (it.next().getId().equals(item.getId())) {
-          it.set(item);
-          found = true;
-          break;
-        }
+  private static boolean isDeleted(Note task) {
+    return Boolean.TRUE.equals(task.getDeleted());
+  }
+
+  void removeTask(String id) {
+    synchronized (writeLock) {
+      Note old = notesById.remove(id);
+      if (old != null) {
+        notes = remove(notes, Arrays.binarySearch(notes, old, NOTE_ORDER));
       }
-      if (!found) {
-        items.add(item);
+    }
+  }
+
+  void addTask(Note item) {
+    if (isDeleted(item)) {
+      removeTask(item.getId());
+      return;
+    }
+    synchronized (writeLock) {
+      Note[] current = notes;
+      Note old = notesById.put(item.getId(), item);
+      if (old != null) {
+        current = remove(current, Arrays.binarySearch(current, old, NOTE_ORDER));
       }
-      Collections.sort(items, taskComparator);
+      int position = -Arrays.binarySearch(current, item, NOTE_ORDER) - 1;
+      Note[] updated = new Note[current.length + 1];
+      System.arraycopy(current, 0, updated, 0, position);
+      updated[position] = item;
+      System.arraycopy(current, position, updated, position + 1, current.length - position);
+      notes = updated;
     }
   }
 
+  private static Note[] remove(Note[] array, int position) {
+    Note[] result = new Note[array.length - 1];
+    System.arraycopy(array, 0, result, 0, position);
+    System.arraycopy(array, position + 1, result, position, result.length - position);
+    return result;
+  }
+
+  /** Shows the latest notes in the list; must be called on the UI thread. */
+  @Override
+  public void notifyDataSetChanged() {
+    shownNotes = notes;
+    super.notifyDataSetChanged();
+  }
+
   public int getCount() {
-    synchronized (items) {
-      return items.size();
-    }
+    return shownNotes.length;
   }
 
   public Note getItem(int position) {
-    synchronized (items) {
-      return items.get(position);
-    }
+    return shownNotes[position];
   }
 
   public long getItemId(int position) {
@@ -27,6 +27,7 @@ public class NoteApplication extends Application {
   private TaskListener listener;
   private NoteAdapter adapter;
   private String emailAddress;
+  private NoteStore store;
 
   public void setTaskListener(TaskListener listener) {
     this.listener = listener;
@@ -46,6 +47,14 @@ public class NoteApplication extends Application {
     }
   }
 
+  /** Returns the local store of the notes of all accounts used on this device. */
+  synchronized NoteStore getStore() {
+    if (store == null) {
+      store = new NoteStore(this);
+    }
+    return store;
+  }
+
   public void setEmailAddress(String emailAddress) {
     this.emailAddress = emailAddress;
   }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.samples.cloudnotes;
+
+import com.appspot.api.services.noteendpoint.model.Note;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLite store of each account's notes, of the local changes not yet sent to the server (the
+ * outbox), and of the time of the last delta sync.
+ * 
+ * <p>
+ * Local changes are applied to the stored notes right away and queued in the outbox, where a later
+ * change to the same note replaces the queued one. Notes received from the server are not applied
+ * over a queued local change, which wins until it has been sent.
+ * </p>
+ */
+class NoteStore extends SQLiteOpenHelper {
+
+  static final String OPERATION_INSERT = "insert";
+  static final String OPERATION_UPDATE = "update";
+  static final String OPERATION_REMOVE = "remove";
+
+  private static final String DATABASE_NAME = "notes.db";
+  private static final int DATABASE_VERSION = 1;
+
+  /** A local change waiting in the outbox. */
+  static final class PendingChange {
+    final long seq;
+    final String id;
+    final String operation;
+    final String description;
+
+    PendingChange(long seq, String id, String operation, String description) {
+      this.seq = seq;
+      this.id = id;
+      this.operation = operation;
+      this.description = description;
+    }
+
+    /** Returns the note to send to the server for an insert or update. */
+    Note toNote() {
+      Note note = new Note();
+      note.setId(id);
+      note.setDescription(description);
+      return note;
+    }
+  }
+
+  NoteStore(Context context) {
+    super(context, DATABASE_NAME, null, DATABASE_VERSION);
+  }
+
+  @Override
+  public void onCreate(SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE notes (account TEXT NOT NULL, id TEXT NOT NULL, description TEXT, "
+        + "updated INTEGER, PRIMARY KEY (account, id))");
+    db.execSQL("CREATE TABLE outbox (seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+        + "account TEXT NOT NULL, id TEXT NOT NULL, operation TEXT NOT NULL, description TEXT)");
+    db.execSQL("CREATE INDEX outbox_account_id ON outbox (account, id)");
+    db.execSQL("CREATE TABLE accounts (account TEXT PRIMARY KEY, sync_time INTEGER NOT NULL)");
+  }
+
+  @Override
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+  }
+
+  /** Returns the stored notes of the given account, including local changes not yet sent. */
+  List<Note> loadNotes(String account) {
+    List<Note> notes = new ArrayList<Note>();
+    Cursor cursor = getReadableDatabase().query("notes",
+        new String[] {"id", "description", "updated"}, "account = ?", new String[] {account},
+        null, null, null);
+    try {
+      while (cursor.moveToNext()) {
+        Note note = new Note();
+        note.setId(cursor.getString(0));
+        note.setDescription(cursor.getString(1));
+        if (!cursor.isNull(2)) {
+          note.setUpdated(cursor.getLong(2));
+        }
+        notes.add(note);
+      }
+    } finally {
+      cursor.close();
+    }
+    return notes;
+  }
+
+  /**
+   * Applies a local change to the stored notes and queues it for the server, replacing any change
+   * to the same note that is still queued.
+   * 
+   * @param operation {@link #OPERATION_INSERT}, {@link #OPERATION_UPDATE} or
+   *        {@link #OPERATION_REMOVE}
+   * @param description new description, ignored for a removal
+   */
+  void enqueue(String account, String id, String operation, String description) {
+    SQLiteDatabase db = getWritableDatabase();
+    db.beginTransaction();
+    try {
+      String[] accountAndId = {account, id};
+      Cursor cursor = db.query("outbox", new String[] {"operation"}, "account = ? AND id = ?",
+          accountAndId, null, null, null);
+      try {
+        // an update of a note whose insert was not sent yet is still an insert
+        if (cursor.moveToFirst() && OPERATION_INSERT.equals(cursor.getString(0))
+            && OPERATION_UPDATE.equals(operation)) {
+          operation = OPERATION_INSERT;
+        }
+      } finally {
+        cursor.close();
+      }
+      // the replacing change gets a new sequence number, so that a send of the replaced change that
+      // is in flight does not remove it from the outbox
+      db.delete("outbox", "account = ? AND id = ?", accountAndId);
+      ContentValues change = new ContentValues();
+      change.put("account", account);
+      change.put("id", id);
+      change.put("operation", operation);
+      change.put("description", description);
+      db.insert("outbox", null, change);
+
+      if (OPERATION_REMOVE.equals(operation)) {
+        db.delete("notes", "account = ? AND id = ?", accountAndId);
+      } else {
+        ContentValues note = new ContentValues();
+        note.put("account", account);
+        note.put("id", id);
+        note.put("description", description);
+        db.replace("notes", null, note);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+  /** Returns up to {@code limit} queued local changes of the given account, oldest first. */
+  List<PendingChange> getPendingChanges(String account, int limit) {
+    List<PendingChange> changes = new ArrayList<PendingChange>();
+    Cursor cursor = getReadableDatabase().query("outbox",
+        new String[] {"seq", "id", "operation", "description"}, "account = ?",
+        new String[] {account}, null, null, "seq", Integer.toString(limit));
+    try {
+      while (cursor.moveToNext()) {
+        changes.add(new PendingChange(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+            cursor.getString(3)));
+      }
+    } finally {
+      cursor.close();
+    }
+    return changes;
+  }
+
+  /**
+   * Removes the given changes from the outbox once the server has handled them. Changes that were
+   * replaced by a later local change in the meantime are no longer in the outbox and stay replaced.
+   */
+  void removePendingChanges(List<PendingChange> changes) {
+    SQLiteDatabase db = getWritableDatabase();
+    db.beginTransaction();
+    try {
+      for (PendingChange change : changes) {
+        db.delete("outbox", "seq = ?", new String[] {Long.toString(change.seq)});
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+  /**
+   * Applies notes received from the server, skipping notes with a queued local change.
+   * 
+   * @param notes notes to store, or tombstones of notes to remove
+   * @param replaceAll whether these notes start a full sync, so that all other stored notes of the
+   *        account without a queued local change are removed first
+   * @return the notes and tombstones that were applied
+   */
+  List<Note> applyRemoteChanges(String account, List<Note> notes, boolean replaceAll) {
+    List<Note> applied = new ArrayList<Note>();
+    SQLiteDatabase db = getWritableDatabase();
+    db.beginTransaction();
+    try {
+      if (replaceAll) {
+        db.delete("notes", "account = ? AND id NOT IN (SELECT id FROM outbox WHERE account = ?)",
+            new String[] {account, account});
+      }
+      if (notes != null) {
+        for (Note note : notes) {
+          String[] accountAndId = {account, note.getId()};
+          if (hasPendingChange(db, accountAndId)) {
+            continue;
+          }
+          if (Boolean.TRUE.equals(note.getDeleted())) {
+            db.delete("notes", "account = ? AND id = ?", accountAndId);
+          } else {
+            ContentValues values = new ContentValues();
+            values.put("account", account);
+            values.put("id", note.getId());
+            values.put("description", note.getDescription());
+            values.put("updated", note.getUpdated());
+            db.replace("notes", null, values);
+          }
+          applied.add(note);
+        }
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    return applied;
+  }
+
+  /** Returns the {@code since} value of the account's next delta sync, or 0 for a full one. */
+  long getSyncTime(String account) {
+    Cursor cursor = getReadableDatabase().query("accounts", new String[] {"sync_time"},
+        "account = ?", new String[] {account}, null, null, null);
+    try {
+      return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+    } finally {
+      cursor.close();
+    }
+  }
+
+  void setSyncTime(String account, long syncTime) {
+    ContentValues values = new ContentValues();
+    values.put("account", account);
+    values.put("sync_time", syncTime);
+    getWritableDatabase().replace("accounts", null, values);
+  }
+
+  private static boolean hasPendingChange(SQLiteDatabase db, String[] accountAndId) {
+    Cursor cursor = db.query("outbox", new String[] {"seq"}, "account = ? AND id = ?",
+        accountAndId, null, null, null);
+    try {
+      return cursor.moveToFirst();
+    } finally {
+      cursor.close();
+    }
+  }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.discovery.cmdline;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.batch.BatchCallback;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpMediaType;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.Key;
+import com.google.api.client.util.Lists;
+import com.google.api.client.util.Maps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the calls read as newline-delimited JSON for {@code google batch}.
+ *
+ * <p>
+ * Each input line describes a call, such as
+ * {@code {"api":"calendar","version":"v3","method":"events.list","params":{"calendarId":"x"}}},
+ * with an optional {@code "body"} object. Calls are sent over one HTTP transport with up to the
+ * given number of HTTP requests in flight, while the input is still being read. Optionally,
+ * consecutive calls of the same API version that need the same credential are grouped into one
+ * batch request. One JSON object per call is printed as soon as the call completes, so in
+ * completion order, with the {@code "line"} number of the call and its {@code "status"} and
+ * {@code "response"}, or its {@code "error"}. The status of a call sent in a batch request is not
+ * known and is left out.
+ * </p>
+ */
+class BatchRunner {
+
+  static final int DEFAULT_CONCURRENCY = 8;
+
+  /** Maximum number of calls grouped into one batch request. */
+  static final int MAX_BATCH_SIZE = 100;
+
+  /** Call of an input line. */
+  public static class CallSpec extends GenericJson {
+    @Key
+    public String api;
+
+    @Key
+    public String version;
+
+    @Key
+    public String method;
+
+    @Key
+    public Map<String, Object> params;
+
+    @Key
+    public Object body;
+  }
+
+  /** Output line of a call. */
+  public static class CallResult extends GenericJson {
+    @Key
+    public Integer line;
+
+    @Key
+    public Integer status;
+
+    @Key
+    public Object response;
+
+    /** Error message, or error response of a call sent in a batch request. */
+    @Key
+    public Object error;
+  }
+
+  /** Call whose request was built and that waits to be sent. */
+  private static class PreparedCall {
+    final int line;
+    final String apiKey;
+    final Credential credential;
+    final HttpRequest request;
+
+    PreparedCall(int line, String apiKey, Credential credential, HttpRequest request) {
+      this.line = line;
+      this.apiKey = apiKey;
+      this.credential = credential;
+      this.request = request;
+    }
+
+    /** Returns whether this call may be sent in the same batch request as the given one. */
+    boolean canBatchWith(PreparedCall other) {
+      return apiKey.equals(other.apiKey) && credential == other.credential;
+    }
+  }
+
+  private final HttpTransport transport;
+  private final JsonFactory jsonFactory;
+  private final PrintStream out;
+  private final int batchSize;
+  private final ExecutorService executor;
+
+  /** Permits for HTTP requests in flight, which stop the input from being read too far ahead. */
+  private final Semaphore inFlight;
+
+  /** Calls waiting to be sent in the same batch request. */
+  private final List<PreparedCall> pending = Lists.newArrayList();
+
+  BatchRunner(HttpTransport transport, JsonFactory jsonFactory, PrintStream out, int concurrency,
+      int batchSize) {
+    this.transport = transport;
+    this.jsonFactory = jsonFactory;
+    this.out = out;
+    this.batchSize = batchSize;
+    executor = Executors.newFixedThreadPool(concurrency);
+    inFlight = new Semaphore(concurrency);
+  }
+
+  /** Runs the calls of the given input and waits for all of them to complete. */
+  void run(BufferedReader in) throws IOException, InterruptedException {
+    try {
+      String line;
+      for (int lineNumber = 1; (line = in.readLine()) != null; lineNumber++) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        PreparedCall call;
+        try {
+          call = prepare(lineNumber, line);
+        } catch (Exception e) {
+          CallResult result = new CallResult();
+          result.line = lineNumber;
+          result.error = e.getMessage();
+          write(result);
+          continue;
+        }
+        if (!pending.isEmpty() && !pending.get(0).canBatchWith(call)) {
+          flush();
+        }
+        pending.add(call);
+        if (pending.size() == batchSize) {
+          flush();
+        }
+      }
+      flush();
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Builds the request of the call described by the given input line. */
+  private PreparedCall prepare(int lineNumber, String line) throws Exception {
+    CallSpec spec = jsonFactory.fromString(line, CallSpec.class);
+    if (spec.api == null || spec.version == null || spec.method == null) {
+      DiscoverySample.error("batch", "missing \"api\", \"version\" or \"method\"");
+    }
+    MethodIndex methodIndex = DiscoverySample.loadMethodIndex("batch", spec.api, spec.version);
+    MethodIndex.Method method = methodIndex.getMethod(spec.method);
+    if (method == null) {
+      DiscoverySample.error("batch", "method not found: " + spec.method);
+    }
+    Map<String, Object> parameters = Maps.newHashMap();
+    if (spec.params != null) {
+      for (Map.Entry<String, Object> entry : spec.params.entrySet()) {
+        String parameterName = entry.getKey();
+        if (entry.getValue() instanceof String) {
+          DiscoverySample.putParameter(null, parameters, parameterName,
+              methodIndex.getParameterType(method, parameterName), (String) entry.getValue());
+        } else {
+          parameters.put(parameterName, entry.getValue());
+        }
+      }
+    }
+    for (String parameterName : method.requiredParameters) {
+      if (!parameters.containsKey(parameterName)) {
+        DiscoverySample.error("batch", "missing required parameter: " + parameterName);
+      }
+    }
+    GenericUrl url = DiscoverySample.buildUrl(methodIndex, method, parameters);
+    HttpContent content = spec.body == null ? null : new JsonHttpContent(jsonFactory, spec.body);
+    Credential credential = DiscoverySample.getCredential(method);
+    HttpRequest request =
+        transport.createRequestFactory(credential).buildRequest(method.httpMethod, url, content);
+    request.setParser(jsonFactory.createJsonObjectParser());
+    return new PreparedCall(lineNumber, spec.api + "/" + spec.version, credential, request);
+  }
+
+  /** Sends the pending calls, waiting for a free permit first. */
+  private void flush() throws InterruptedException {
+    if (pending.isEmpty()) {
+      return;
+    }
+    final List<PreparedCall> calls = Lists.newArrayList(pending);
+    pending.clear();
+    inFlight.acquire();
+    executor.execute(new Runnable() {
+      public void run() {
+        try {
+          if (calls.size() == 1) {
+            execute(calls.get(0));
+          } else {
+            executeBatch(calls);
+          }
+        } finally {
+          inFlight.release();
+        }
+      }
+    });
+  }
+
+  private void execute(PreparedCall call) {
+    CallResult result = new CallResult();
+    result.line = call.line;
+    try {
+      HttpResponse response = call.request.execute();
+      try {
+        result.status = response.getStatusCode();
+        result.response = parseContent(response);
+      } finally {
+        response.ignore();
+      }
+    } catch (HttpResponseException e) {
+      result.status = e.getStatusCode();
+      result.error = e.getMessage();
+    } catch (IOException e) {
+      result.error = e.getMessage();
+    } catch (RuntimeException e) {
+      // such as from the credential or the JSON parser; the call still gets its output line
+      result.error = e.toString();
+    }
+    write(result);
+  }
+
+  private void executeBatch(List<PreparedCall> calls) {
+    PreparedCall first = calls.get(0);
+    BatchRequest batch = new BatchRequest(transport, first.credential);
+    batch.setBatchUrl(new GenericUrl("https://www.googleapis.com/batch/" + first.apiKey));
+    final boolean[] done = new boolean[calls.size()];
+    try {
+      for (int i = 0; i < calls.size(); i++) {
+        final int index = i;
+        final CallResult result = new CallResult();
+        result.line = calls.get(i).line;
+        batch.queue(calls.get(i).request, GenericJson.class, GenericJson.class,
+            new BatchCallback<GenericJson, GenericJson>() {
+
+              public void onSuccess(GenericJson response, HttpHeaders responseHeaders) {
+                result.response = response;
+                write(result);
+                done[index] = true;
+              }
+
+              public void onFailure(GenericJson error, HttpHeaders responseHeaders) {
+                result.error = error;
+                write(result);
+                done[index] = true;
+              }
+            });
+      }
+      batch.execute();
+    } catch (IOException e) {
+      writeErrors(calls, done, e.getMessage());
+    } catch (RuntimeException e) {
+      writeErrors(calls, done, e.toString());
+    }
+  }
+
+  /** Writes the given error as the result of each of the given calls that is not done. */
+  private void writeErrors(List<PreparedCall> calls, boolean[] done, String error) {
+    for (int i = 0; i < calls.size(); i++) {
+      if (!done[i]) {
+        CallResult result = new CallResult();
+        result.line = calls.get(i).line;
+        result.error = error;
+        write(result);
+      }
+    }
+  }
+
+  /** Returns the parsed JSON content of the given response, its text, or {@code null} if empty. */
+  private Object parseContent(HttpResponse response) throws IOException {
+    InputStream content = response.getContent();
+    if (content == null) {
+      return null;
+    }
+    HttpMediaType mediaType = response.getMediaType();
+    if (mediaType != null && "json".equals(mediaType.getSubType())) {
+      return jsonFactory.fromInputStream(content, response.getContentCharset(), GenericJson.class);
+    }
+    return response.parseAsString();
+  }
+
+  private void write(CallResult result) {
+    String line;
+    try {
+      line = jsonFactory.toString(result);
+    } catch (IOException e) {
+      line = "{\"line\":" + result.line + ",\"error\":\"unable to serialize result\"}";
+    } catch (RuntimeException e) {
+      line = "{\"line\":" + result.line + ",\"error\":\"unable to serialize result\"}";
+    }
+    synchronized (out) {
+      out.println(line);
+      out.flush();
+    }
+  }
+}
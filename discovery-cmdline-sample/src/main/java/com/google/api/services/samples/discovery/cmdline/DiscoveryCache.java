@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.discovery.cmdline;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.discovery.Discovery;
+import com.google.api.services.discovery.model.RestDescription;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of discovery documents, keyed by API name and version.
+ *
+ * <p>
+ * For each API version, the cache directory holds a serialized {@link MethodIndex} built from
+ * the document, together with the document's ETag; the document itself is not kept. A cached
+ * document is used as is for {@link #FRESH_MILLIS} after it was downloaded or revalidated. After
+ * that, it is requested again with {@code If-None-Match}, so that an unchanged document costs a
+ * {@code 304 Not Modified} response. In offline mode, cached documents are always used and never
+ * revalidated.
+ * </p>
+ *
+ * <p>
+ * Loaded entries are also kept in memory, so that the commands of a shell only read each method
+ * index from disk once. This class is thread-safe.
+ * </p>
+ */
+class DiscoveryCache {
+
+  /** Time after which a cached document is revalidated, in milliseconds. */
+  static final long FRESH_MILLIS = 60 * 60 * 1000;
+
+  /** ETag and method index of a cached document, together with the time it was validated. */
+  private static class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    String etag;
+    long validated;
+    MethodIndex index;
+  }
+
+  private final File dir;
+  private final Discovery discovery;
+  private final JsonFactory jsonFactory;
+  private final boolean offline;
+
+  /** Entries loaded so far, keyed by {@code apiName + "." + apiVersion}. */
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+  /**
+   * @param dir directory of the cached documents, created when the first document is stored
+   * @param offline whether to only use cached documents, without any network access
+   */
+  DiscoveryCache(File dir, Discovery discovery, JsonFactory jsonFactory, boolean offline) {
+    this.dir = dir;
+    this.discovery = discovery;
+    this.jsonFactory = jsonFactory;
+    this.offline = offline;
+  }
+
+  /** Returns the method index of the given API version, downloading its document if needed. */
+  synchronized MethodIndex getMethodIndex(String apiName, String apiVersion) throws IOException {
+    return load(apiName, apiVersion).index;
+  }
+
+  /**
+   * Returns the cache entry of the given API version, after downloading or revalidating its
+   * document if it is missing or stale.
+   *
+   * @throws HttpResponseException if the document could not be downloaded, such as for an unknown
+   *         API (404)
+   * @throws IOException if the document is not cached in offline mode
+   */
+  private Entry load(String apiName, String apiVersion) throws IOException {
+    String key = apiName + "." + apiVersion;
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = readEntry(apiName, apiVersion);
+      if (entry != null) {
+        entries.put(key, entry);
+      }
+    }
+    if (offline) {
+      if (entry == null) {
+        throw new IOException(
+            "discovery document not cached for offline use: " + apiName + " " + apiVersion);
+      }
+      return entry;
+    }
+    if (entry != null && System.currentTimeMillis() - entry.validated < FRESH_MILLIS) {
+      return entry;
+    }
+    Discovery.Apis.GetRest request = discovery.apis().getRest(apiName, apiVersion);
+    if (entry != null && entry.etag != null) {
+      request.getRequestHeaders().setIfNoneMatch(entry.etag);
+    }
+    HttpResponse response;
+    try {
+      response = request.executeUnparsed();
+    } catch (HttpResponseException e) {
+      if (entry == null || e.getStatusCode() != HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+        throw e;
+      }
+      entry.validated = System.currentTimeMillis();
+      writeEntry(apiName, apiVersion, entry);
+      return entry;
+    }
+    RestDescription document;
+    try {
+      document = jsonFactory.fromInputStream(
+          response.getContent(), response.getContentCharset(), RestDescription.class);
+    } finally {
+      // keep the connection open for further requests
+      response.ignore();
+    }
+    entry = new Entry();
+    entry.etag = response.getHeaders().getETag();
+    entry.validated = System.currentTimeMillis();
+    entry.index = MethodIndex.build(document);
+    dir.mkdirs();
+    writeEntry(apiName, apiVersion, entry);
+    entries.put(key, entry);
+    return entry;
+  }
+
+  /** Returns the cached entry of the given API version, or {@code null} if there is none. */
+  private Entry readEntry(String apiName, String apiVersion) {
+    File file = entryFile(apiName, apiVersion);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      ObjectInputStream in =
+          new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        return (Entry) in.readObject();
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      // unreadable, for example written by an older version of this sample
+      return null;
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  private void writeEntry(String apiName, String apiVersion, Entry entry) throws IOException {
+    File file = entryFile(apiName, apiVersion);
+    File tmp = new File(dir, file.getName() + ".tmp");
+    ObjectOutputStream out =
+        new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeObject(entry);
+    } finally {
+      out.close();
+    }
+    replace(tmp, file);
+  }
+
+  private File entryFile(String apiName, String apiVersion) {
+    return new File(dir, apiName + "." + apiVersion + ".index");
+  }
+
+  /** Replaces the given file by the temporary file, as atomically as the platform allows. */
+  private static void replace(File tmp, File file) throws IOException {
+    if (!tmp.renameTo(file)) {
+      // File.renameTo does not replace an existing file on all platforms
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("unable to write " + file);
+      }
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpContent;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.UriTemplate;
@@ -36,22 +37,25 @@ import com.google.api.client.util.store.DataStoreFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
 import com.google.api.services.discovery.Discovery;
 import com.google.api.services.discovery.model.DirectoryList;
-import com.google.api.services.discovery.model.JsonSchema;
-import com.google.api.services.discovery.model.RestDescription;
-import com.google.api.services.discovery.model.RestMethod;
-import com.google.api.services.discovery.model.RestResource;
 import com.google.common.base.Joiner;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,10 +78,23 @@ public class DiscoverySample {
   private static HttpTransport httpTransport;
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 
   static Discovery DISCOVERY;
 
+  /** Directory of the cached discovery documents. */
+  private static final java.io.File DISCOVERY_CACHE_DIR = new java.io.File(DATA_STORE_DIR, "apis");
+
+  private static DiscoveryCache discoveryCache;
+
+  private static GoogleClientSecrets clientSecrets;
+
+  /** Authorized credential of each set of scopes. */
+  private static final Map<Set<String>, Credential> credentials = Maps.newHashMap();
+
+  /** Whether to only use cached discovery documents, without any network access for them. */
+  private static boolean offline;
+
   private static final String APP_NAME = "Google Discovery API Client";
 
   private static final Pattern API_NAME_PATTERN = Pattern.compile("\\w+");
@@ -87,6 +104,31 @@ public class DiscoverySample {
   private static final Pattern METHOD_PATTERN = Pattern.compile("((\\w+)\\.)*(\\w+)");
 
   public static void main(String[] args) throws Exception {
+    // parse global options
+    if (args.length != 0 && args[0].equals("--offline")) {
+      offline = true;
+      args = Arrays.copyOfRange(args, 1, args.length);
+    }
+    try {
+      if (args.length != 0 && args[0].equals("shell")) {
+        shell();
+      } else {
+        run(args);
+      }
+    } catch (CommandException e) {
+      e.print();
+      System.exit(1);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    } catch (Throwable t) {
+      t.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  /** Runs the command with the given arguments. */
+  private static void run(String[] args) throws Exception {
     // parse command argument
     if (args.length == 0) {
       showMainHelp();
@@ -98,19 +140,112 @@ public class DiscoverySample {
         call(args);
       } else if (command.equals("discover")) {
         discover(args);
+      } else if (command.equals("batch")) {
+        batch(args);
       } else {
         error(null, "unknown command: " + command);
       }
     }
   }
 
+  /**
+   * Runs the commands read from standard input, one per line, until {@code exit} or the end of the
+   * input. The HTTP transport with its open connections, the credentials and the discovery
+   * documents are kept from one command to the next.
+   */
+  private static void shell() throws Exception {
+    initialize();
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+    boolean interactive = System.console() != null;
+    while (true) {
+      if (interactive) {
+        System.out.print("google> ");
+        System.out.flush();
+      }
+      String line = in.readLine();
+      if (line == null) {
+        break;
+      }
+      try {
+        List<String> words = splitCommandLine(line);
+        if (words.isEmpty()) {
+          continue;
+        }
+        if (words.get(0).equals("exit")) {
+          break;
+        }
+        if (words.get(0).equals("shell")) {
+          error("shell", "already in shell");
+        }
+        run(words.toArray(new String[words.size()]));
+      } catch (CommandException e) {
+        e.print();
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+      } catch (RuntimeException e) {
+        // such as an invalid parameter value; only this command fails, not the whole session
+        System.err.println("ERROR: " + e);
+      }
+      System.out.flush();
+    }
+  }
+
+  /**
+   * Splits a command line of the shell into words separated by spaces. Text between double or
+   * single quotes is part of a single word.
+   */
+  private static List<String> splitCommandLine(String line) {
+    List<String> words = Lists.newArrayList();
+    StringBuilder word = null;
+    char quote = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        } else {
+          word.append(c);
+        }
+      } else if (Character.isWhitespace(c)) {
+        if (word != null) {
+          words.add(word.toString());
+          word = null;
+        }
+      } else {
+        if (word == null) {
+          word = new StringBuilder();
+        }
+        if (c == '"' || c == '\'') {
+          quote = c;
+        } else {
+          word.append(c);
+        }
+      }
+    }
+    if (quote != 0) {
+      error("shell", "unterminated quote: " + line);
+    }
+    if (word != null) {
+      words.add(word.toString());
+    }
+    return words;
+  }
+
   private static void help(String[] args) {
     if (args.length == 1) {
       showMainHelp();
     } else {
       String helpCommand = args[1];
       if (helpCommand.equals("call")) {
-        System.out.println("Usage: google call apiName apiVersion methodName [parameters]");
+        System.out.println("Usage: google call apiName apiVersion methodName [parameters]"
+            + " [options]");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  --output file  write the response to the file instead of stdout");
+        System.out.println("  --pretty       pretty-print a JSON response");
+        System.out.println("  --all-pages    follow nextPageToken and print the items of every");
+        System.out.println("                 page, one JSON object per line; cannot be combined");
+        System.out.println("                 with --pretty");
         System.out.println();
         System.out.println("Examples:");
         System.out.println("  google call discovery v1 apis.getRest plus v1");
@@ -118,6 +253,37 @@ public class DiscoverySample {
         System.out.println("  google call calendar v3 calendarList.list");
         System.out.println("  echo {\"summary\":\"temporary calendar\"} > /tmp/post.json && "
             + "google call calendar v3 calendars.insert /tmp/post.json");
+        System.out.println("  google call calendar v3 events.list primary --all-pages"
+            + " --output /tmp/events.ndjson");
+      } else if (helpCommand.equals("shell")) {
+        System.out.println("Usage: google shell");
+        System.out.println();
+        System.out.println("Reads commands from standard input, one per line, and runs them in");
+        System.out.println("the same process, reusing connections, credentials and discovery");
+        System.out.println("documents. Commands are written without the leading \"google\".");
+        System.out.println("Type \"exit\" or end the input to leave.");
+        System.out.println();
+        System.out.println("Example:");
+        System.out.println("  printf 'call calendar v3 calendarList.list\\ndiscover plus v1\\n' "
+            + "| google shell");
+      } else if (helpCommand.equals("batch")) {
+        System.out.println("Usage: google batch [--concurrency <n>] [--batch-size <n>] [file]");
+        System.out.println();
+        System.out.println("Runs the calls read from the file, or from standard input, one JSON");
+        System.out.println("object per line with \"api\", \"version\", \"method\" and optional");
+        System.out.println("\"params\" and \"body\". Prints one JSON object per call as it");
+        System.out.println("completes, with the \"line\" of the call and its \"status\" and");
+        System.out.println("\"response\", or its \"error\".");
+        System.out.println();
+        System.out.println("  --concurrency <n>  number of HTTP requests in flight (default "
+            + BatchRunner.DEFAULT_CONCURRENCY + ")");
+        System.out.println("  --batch-size <n>   group up to n consecutive calls of an API into");
+        System.out.println("                     one batch request (default 1, at most "
+            + BatchRunner.MAX_BATCH_SIZE + ")");
+        System.out.println();
+        System.out.println("Example:");
+        System.out.println("  echo '{\"api\":\"calendar\",\"version\":\"v3\","
+            + "\"method\":\"calendarList.list\"}' | google batch");
       } else if (helpCommand.equals("discover")) {
         System.out.println("Usage");
         System.out.println("List all APIs: google discover");
@@ -140,25 +306,43 @@ public class DiscoverySample {
     System.out.println();
     System.out.println("  google help call");
     System.out.println("  google help discover");
+    System.out.println("  google help shell");
+    System.out.println("  google help batch");
+    System.out.println();
+    System.out.println("Global options, given before the command:");
+    System.out.println("  --offline  only use the discovery documents cached by earlier commands");
   }
 
-  private static void error(String command, String detail) {
-    System.err.println("ERROR: " + detail);
-    System.err.println("For help, type: google" + (command == null ? "" : " help " + command));
-    System.exit(1);
+  /** Thrown by {@link #error} to abort the current command. */
+  @SuppressWarnings("serial")
+  static class CommandException extends RuntimeException {
+
+    private final String command;
+
+    CommandException(String command, String detail) {
+      super(detail);
+      this.command = command;
+    }
+
+    void print() {
+      System.err.println("ERROR: " + getMessage());
+      System.err.println("For help, type: google" + (command == null ? "" : " help " + command));
+    }
   }
 
-  private static void putParameter(String argName, Map<String, Object> parameters,
-      String parameterName, JsonSchema parameter, String parameterValue) {
+  static void error(String command, String detail) {
+    throw new CommandException(command, detail);
+  }
+
+  static void putParameter(String argName, Map<String, Object> parameters,
+      String parameterName, String parameterType, String parameterValue) {
     Object value = parameterValue;
-    if (parameter != null) {
-      if ("boolean".equals(parameter.getType())) {
-        value = Boolean.valueOf(parameterValue);
-      } else if ("number".equals(parameter.getType())) {
-        value = new BigDecimal(parameterValue);
-      } else if ("integer".equals(parameter.getType())) {
-        value = new BigInteger(parameterValue);
-      }
+    if ("boolean".equals(parameterType)) {
+      value = Boolean.valueOf(parameterValue);
+    } else if ("number".equals(parameterType)) {
+      value = new BigDecimal(parameterValue);
+    } else if ("integer".equals(parameterType)) {
+      value = new BigInteger(parameterValue);
     }
     Object oldValue = parameters.put(parameterName, value);
     if (oldValue != null) {
@@ -166,9 +350,72 @@ public class DiscoverySample {
     }
   }
 
-  private static void call(String[] args) throws Exception {
+  /**
+   * Sets up the HTTP transport, the credential store and the discovery client, unless this was
+   * already done by a previous command of the shell.
+   */
+  private static void initialize() throws Exception {
+    if (httpTransport != null) {
+      return;
+    }
     httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+    dataStoreFactory = new FileDataStoreFactory(DATA_STORE_DIR);
     DISCOVERY = new Discovery(httpTransport, JSON_FACTORY, null);
+    discoveryCache = new DiscoveryCache(DISCOVERY_CACHE_DIR, DISCOVERY, JSON_FACTORY, offline);
+  }
+
+  private static void batch(String[] args) throws Exception {
+    initialize();
+    int concurrency = BatchRunner.DEFAULT_CONCURRENCY;
+    int batchSize = 1;
+    String fileName = null;
+    int i = 1;
+    while (i < args.length) {
+      String arg = args[i++];
+      if (arg.equals("--concurrency") || arg.equals("--batch-size")) {
+        if (i == args.length) {
+          error("batch", "missing value for: " + arg);
+        }
+        int value = 0;
+        try {
+          value = Integer.parseInt(args[i++]);
+        } catch (NumberFormatException e) {
+          error("batch", "invalid value for " + arg + ": " + args[i - 1]);
+        }
+        if (value < 1 || arg.equals("--batch-size") && value > BatchRunner.MAX_BATCH_SIZE) {
+          error("batch", "value out of range for " + arg + ": " + value);
+        }
+        if (arg.equals("--concurrency")) {
+          concurrency = value;
+        } else {
+          batchSize = value;
+        }
+      } else if (fileName == null && !arg.startsWith("--")) {
+        fileName = arg;
+      } else {
+        error("batch", "unexpected argument: " + arg);
+      }
+    }
+    InputStream in = System.in;
+    if (fileName != null) {
+      File file = new File(fileName);
+      if (!file.canRead()) {
+        error("batch", "unable to read file: " + fileName);
+      }
+      in = new FileInputStream(file);
+    }
+    try {
+      new BatchRunner(httpTransport, JSON_FACTORY, System.out, concurrency, batchSize)
+          .run(new BufferedReader(new InputStreamReader(in, "UTF-8")));
+    } finally {
+      if (in != System.in) {
+        in.close();
+      }
+    }
+  }
+
+  private static void call(String[] args) throws Exception {
+    initialize();
 
     // load discovery document
     if (args.length == 1) {
@@ -187,52 +434,32 @@ public class DiscoverySample {
     if (!m.matches()) {
       error("call", "invalid method name: " + fullMethodName);
     }
-    RestDescription restDescription = loadGoogleAPI("call", apiName, apiVersion);
-    Map<String, RestMethod> methodMap = null;
-    int curIndex = 0;
-    int nextIndex = fullMethodName.indexOf('.');
-    if (nextIndex == -1) {
-      methodMap = restDescription.getMethods();
-    } else {
-      Map<String, RestResource> resources = restDescription.getResources();
-      while (true) {
-        RestResource resource = resources.get(fullMethodName.substring(curIndex, nextIndex));
-        if (resource == null) {
-          break;
-        }
-        curIndex = nextIndex + 1;
-        nextIndex = fullMethodName.indexOf(curIndex + 1, '.');
-        if (nextIndex == -1) {
-          methodMap = resource.getMethods();
-          break;
-        }
-        resources = resource.getResources();
-      }
-    }
-    RestMethod method =
-        methodMap == null ? null : methodMap.get(fullMethodName.substring(curIndex));
+    MethodIndex methodIndex = loadMethodIndex("call", apiName, apiVersion);
+    MethodIndex.Method method = methodIndex.getMethod(fullMethodName);
     if (method == null) {
       error("call", "method not found: " + fullMethodName);
     }
     HashMap<String, Object> parameters = Maps.newHashMap();
     File requestBodyFile = null;
     String contentType = "application/json";
+    File outputFile = null;
+    boolean pretty = false;
+    boolean allPages = false;
     int i = 4;
     // required parameters
-    if (method.getParameterOrder() != null) {
-      for (String parameterName : method.getParameterOrder()) {
-        JsonSchema parameter = method.getParameters().get(parameterName);
-        if (Boolean.TRUE.equals(parameter.getRequired())) {
-          if (i == args.length) {
-            error("call", "missing required parameter: " + parameter);
-          } else {
-            putParameter(null, parameters, parameterName, parameter, args[i++]);
-          }
-        }
+    for (String parameterName : method.requiredParameters) {
+      if (i == args.length) {
+        error("call", "missing required parameter: " + parameterName);
+      } else {
+        putParameter(null, parameters, parameterName,
+            methodIndex.getParameterType(method, parameterName), args[i++]);
       }
     }
     // possibly required content
-    if (!method.getHttpMethod().equals("GET") && !method.getHttpMethod().equals("DELETE")) {
+    if (method.hasContent) {
+      if (i == args.length) {
+        error("call", "missing content file");
+      }
       String fileName = args[i++];
       requestBodyFile = new File(fileName);
       if (!requestBodyFile.canRead()) {
@@ -244,87 +471,132 @@ public class DiscoverySample {
       if (!argName.startsWith("--")) {
         error("call", "optional parameters must start with \"--\": " + argName);
       }
+      if (argName.equals("--pretty")) {
+        pretty = true;
+        continue;
+      }
+      if (argName.equals("--all-pages")) {
+        if (method.hasContent) {
+          error("call", "--all-pages cannot be specified for this method");
+        }
+        allPages = true;
+        continue;
+      }
       String parameterName = argName.substring(2);
       if (i == args.length) {
         error("call", "missing parameter value for: " + argName);
       }
       String parameterValue = args[i++];
-      if (parameterName.equals("contentType")) {
+      if (argName.equals("--output")) {
+        outputFile = new File(parameterValue);
+      } else if (parameterName.equals("contentType")) {
         contentType = parameterValue;
-        if (method.getHttpMethod().equals("GET") || method.getHttpMethod().equals("DELETE")) {
+        if (!method.hasContent) {
           error("call", "HTTP content type cannot be specified for this method: " + argName);
         }
       } else {
-        JsonSchema parameter = null;
-        if (restDescription.getParameters() != null) {
-          parameter = restDescription.getParameters().get(parameterName);
-        }
-        if (parameter == null && method.getParameters() == null) {
-          parameter = method.getParameters().get(parameterName);
-        }
-        putParameter(argName, parameters, parameterName, parameter, parameterValue);
+        putParameter(argName, parameters, parameterName,
+            methodIndex.getParameterType(method, parameterName), parameterValue);
       }
     }
-    GenericUrl url = new GenericUrl(UriTemplate.expand(
-        "https://www.googleapis.com" + restDescription.getBasePath() + method.getPath(), parameters,
-        true));
+    if (pretty && allPages) {
+      error("call", "--pretty cannot be specified with --all-pages");
+    }
+    GenericUrl url = buildUrl(methodIndex, method, parameters);
     HttpContent content = null;
     if (requestBodyFile != null) {
       content = new FileContent(contentType, requestBodyFile);
     }
+    HttpRequestFactory requestFactory = httpTransport.createRequestFactory(getCredential(method));
+    OutputStream out = outputFile == null
+        ? System.out : new BufferedOutputStream(new FileOutputStream(outputFile));
     try {
-      HttpRequestFactory requestFactory;
-      if (method.getScopes() != null) {
-        List<String> scopes = Lists.newArrayListWithCapacity(method.getScopes().size());
-        for (Object s : method.getScopes()) {
-          scopes.add((String) s);
+      ResponseWriter writer = new ResponseWriter(JSON_FACTORY, out, pretty);
+      String pageToken = null;
+      do {
+        if (pageToken != null) {
+          url.set("pageToken", pageToken);
         }
-        Credential credential = authorize(method.getId(), scopes);
-        requestFactory = httpTransport.createRequestFactory(credential);
-      } else {
-        requestFactory = httpTransport.createRequestFactory();
+        HttpRequest request = requestFactory.buildRequest(method.httpMethod, url, content);
+        HttpResponse response = request.execute();
+        try {
+          if (allPages) {
+            pageToken = writer.writeItems(response);
+          } else {
+            writer.write(response);
+          }
+        } finally {
+          response.ignore();
+        }
+      } while (pageToken != null);
+      if (outputFile == null && !allPages) {
+        System.out.println();
+      }
+    } finally {
+      if (outputFile != null) {
+        out.close();
       }
-      HttpRequest request = requestFactory.buildRequest(method.getHttpMethod(), url, content);
-      String response = request.execute().parseAsString();
-      System.out.println(response);
-    } catch (IOException e) {
-      System.err.println(e.getMessage());
-      System.exit(1);
-    } catch (Throwable t) {
-      t.printStackTrace();
-      System.exit(1);
     }
   }
 
-  /** Authorizes the installed application to access user's protected data. */
+  /** Returns the URL of the given method with the given parameters. */
+  static GenericUrl buildUrl(
+      MethodIndex methodIndex, MethodIndex.Method method, Map<String, Object> parameters) {
+    return new GenericUrl(UriTemplate.expand(
+        "https://www.googleapis.com" + methodIndex.basePath + method.path, parameters, true));
+  }
+
+  /** Returns the credential to call the given method, or {@code null} if it needs none. */
+  static Credential getCredential(MethodIndex.Method method) throws Exception {
+    return method.scopes.isEmpty() ? null : authorize(method.id, method.scopes);
+  }
+
+  /**
+   * Authorizes the installed application to access user's protected data. The credential of each
+   * set of scopes is kept for the following commands of the shell.
+   */
   private static Credential authorize(String methodId, List<String> scopes) throws Exception {
+    Set<String> scopeSet = new TreeSet<String>(scopes);
+    Credential credential = credentials.get(scopeSet);
+    if (credential != null) {
+      return credential;
+    }
     // load client secrets
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY,
-        new InputStreamReader(DiscoverySample.class.getResourceAsStream("/client_secrets.json")));
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println("Enter Client ID and Secret from https://code.google.com/apis/console/ "
-          + "into discovery-cmdline-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
+    if (clientSecrets == null) {
+      clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(
+          DiscoverySample.class.getResourceAsStream("/client_secrets.json")));
+      if (clientSecrets.getDetails().getClientId().startsWith("Enter")
+          || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
+        clientSecrets = null;
+        error(null, "Enter Client ID and Secret from https://code.google.com/apis/console/ "
+            + "into discovery-cmdline-sample/src/main/resources/client_secrets.json");
+      }
     }
     // set up authorization code flow
     GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
         httpTransport, JSON_FACTORY, clientSecrets, scopes).setDataStoreFactory(dataStoreFactory)
         .build();
     // authorize
-    return new AuthorizationCodeInstalledApp(flow, new LocalServerReceiver()).authorize("user");
+    credential =
+        new AuthorizationCodeInstalledApp(flow, new LocalServerReceiver()).authorize("user");
+    credentials.put(scopeSet, credential);
+    return credential;
   }
 
-  private static RestDescription loadGoogleAPI(String command, String apiName, String apiVersion)
-      throws IOException {
+  private static void checkApi(String command, String apiName, String apiVersion) {
     if (!API_NAME_PATTERN.matcher(apiName).matches()) {
       error(command, "invalid API name: " + apiName);
     }
     if (!API_VERSION_PATTERN.matcher(apiVersion).matches()) {
       error(command, "invalid API version: " + apiVersion);
     }
+  }
+
+  static MethodIndex loadMethodIndex(String command, String apiName, String apiVersion)
+      throws IOException {
+    checkApi(command, apiName, apiVersion);
     try {
-      return DISCOVERY.apis().getRest(apiName, apiVersion).execute();
+      return discoveryCache.getMethodIndex(apiName, apiVersion);
     } catch (HttpResponseException e) {
       if (e.getStatusCode() == 404) {
         error(command, "API not found: " + apiName);
@@ -334,59 +606,8 @@ public class DiscoverySample {
     }
   }
 
-  private static void processMethods(
-      ArrayList<MethodDetails> result, String resourceName, Map<String, RestMethod> methodMap) {
-    if (methodMap == null) {
-      return;
-    }
-    for (Map.Entry<String, RestMethod> methodEntry : methodMap.entrySet()) {
-      MethodDetails details = new MethodDetails();
-      String methodName = methodEntry.getKey();
-      RestMethod method = methodEntry.getValue();
-      details.name = (resourceName.isEmpty() ? "" : resourceName + ".") + methodName;
-      details.hasContent =
-          !method.getHttpMethod().equals("GET") && !method.getHttpMethod().equals("DELETE");
-      // required parameters
-      if (method.getParameterOrder() != null) {
-        for (String parameterName : method.getParameterOrder()) {
-          JsonSchema parameter = method.getParameters().get(parameterName);
-          if (Boolean.TRUE.equals(parameter.getRequired())) {
-            details.requiredParameters.add(parameterName);
-          }
-        }
-      }
-      // optional parameters
-      Map<String, JsonSchema> parameters = method.getParameters();
-      if (parameters != null) {
-        for (Map.Entry<String, JsonSchema> parameterEntry : parameters.entrySet()) {
-          String parameterName = parameterEntry.getKey();
-          JsonSchema parameter = parameterEntry.getValue();
-          if (!Boolean.TRUE.equals(parameter.getRequired())) {
-            details.optionalParameters.add(parameterName);
-          }
-        }
-      }
-      result.add(details);
-    }
-  }
-
-  private static void processResources(
-      ArrayList<MethodDetails> result, String resourceName, Map<String, RestResource> resourceMap) {
-    if (resourceMap == null) {
-      return;
-    }
-    for (Map.Entry<String, RestResource> entry : resourceMap.entrySet()) {
-      RestResource resource = entry.getValue();
-      String curResourceName = (resourceName.isEmpty() ? "" : resourceName + ".") + entry.getKey();
-      processMethods(result, curResourceName, resource.getMethods());
-      processResources(result, curResourceName, resource.getResources());
-    }
-  }
-
   private static void discover(String[] args) throws Exception {
-    httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-    dataStoreFactory = new FileDataStoreFactory(DATA_STORE_DIR);
-    DISCOVERY = new Discovery(httpTransport, JSON_FACTORY, null);
+    initialize();
     System.out.println(APP_NAME);
     if (args.length == 1) {
       DirectoryList directoryList = DISCOVERY.apis().list().execute();
@@ -414,29 +635,23 @@ public class DiscoverySample {
     System.out.println("API Version: " + apiVersion);
     System.out.println();
     System.out.println("Methods:");
-    RestDescription restDescription = loadGoogleAPI("discover", apiName, apiVersion);
-    // compute method details
-    ArrayList<MethodDetails> result = Lists.newArrayList();
-    String resourceName = "";
-    processMethods(result, resourceName, restDescription.getMethods());
-    processResources(result, resourceName, restDescription.getResources());
-    Collections.sort(result);
+    MethodIndex methodIndex = loadMethodIndex("discover", apiName, apiVersion);
     // display method details
-    for (MethodDetails methodDetail : result) {
+    for (MethodIndex.Method method : methodIndex.getSortedMethods()) {
       System.out.println();
-      System.out.print("google call " + apiName + " " + apiVersion + " " + methodDetail.name);
-      for (String param : methodDetail.requiredParameters) {
+      System.out.print("google call " + apiName + " " + apiVersion + " " + method.name);
+      for (String param : method.requiredParameters) {
         System.out.print(" <" + param + ">");
       }
-      if (methodDetail.hasContent) {
+      if (method.hasContent) {
         System.out.print(" contentFile");
       }
-      if (methodDetail.optionalParameters.isEmpty() && !methodDetail.hasContent) {
+      if (method.optionalParameters.isEmpty() && !method.hasContent) {
         System.out.println();
       } else {
         System.out.println(" [optional parameters...]");
         System.out.println("  --contentType <value> (default is \"application/json\")");
-        for (String param : methodDetail.optionalParameters) {
+        for (String param : method.optionalParameters) {
           System.out.println("  --" + param + " <value>");
         }
       }
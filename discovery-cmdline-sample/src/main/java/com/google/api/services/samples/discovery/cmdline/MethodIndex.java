@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.discovery.cmdline;
+
+import com.google.api.services.discovery.model.JsonSchema;
+import com.google.api.services.discovery.model.RestDescription;
+import com.google.api.services.discovery.model.RestMethod;
+import com.google.api.services.discovery.model.RestResource;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact index of the methods of a discovery document, holding only what is needed to list and
+ * call them.
+ *
+ * <p>
+ * Methods are found in constant time, by their dotted name within the API (for example
+ * {@code "activities.list"}) or by their id (for example {@code "plus.activities.list"}), however
+ * deeply their resources are nested. The required and optional parameters of each method are
+ * resolved when the index is built.
+ * </p>
+ *
+ * <p>
+ * It is built once per discovery document and stored next to it by {@link DiscoveryCache}, so
+ * that listing or calling methods neither downloads nor parses the document.
+ * </p>
+ */
+class MethodIndex implements Serializable {
+
+  private static final long serialVersionUID = 2L;
+
+  /** Method of the API, as needed to list and call it. */
+  static class Method implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    /** Dotted name of the method within the API. */
+    String name;
+
+    String id;
+    String httpMethod;
+    String path;
+    ArrayList<String> scopes = new ArrayList<String>();
+
+    /** Names of the required parameters, in the order they are passed on the command line. */
+    ArrayList<String> requiredParameters = new ArrayList<String>();
+
+    /** Names of the optional parameters of the method, sorted. */
+    ArrayList<String> optionalParameters = new ArrayList<String>();
+
+    /** Type of each parameter of the method, such as {@code "integer"}, keyed by name. */
+    HashMap<String, String> parameterTypes = new HashMap<String, String>();
+
+    /** Whether the method takes a request body. */
+    boolean hasContent;
+  }
+
+  String basePath;
+
+  /** Type of each parameter common to all methods of the API, keyed by name. */
+  HashMap<String, String> parameterTypes = new HashMap<String, String>();
+
+  /** Methods keyed by dotted name. */
+  HashMap<String, Method> methods = new HashMap<String, Method>();
+
+  /** The same methods keyed by id. */
+  HashMap<String, Method> methodsById = new HashMap<String, Method>();
+
+  /** Returns the method with the given dotted name or id, or {@code null} if there is none. */
+  Method getMethod(String nameOrId) {
+    Method method = methods.get(nameOrId);
+    return method != null ? method : methodsById.get(nameOrId);
+  }
+
+  /** Returns all methods, sorted by name. */
+  List<Method> getSortedMethods() {
+    List<Method> result = new ArrayList<Method>(methods.values());
+    Collections.sort(result, new Comparator<Method>() {
+      public int compare(Method method1, Method method2) {
+        return method1.name.compareTo(method2.name);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns the type of the given parameter of a method, or of the API, or {@code null} if it is
+   * unknown.
+   */
+  String getParameterType(Method method, String parameterName) {
+    String type = method.parameterTypes.get(parameterName);
+    return type != null ? type : parameterTypes.get(parameterName);
+  }
+
+  /** Builds the index of the given discovery document. */
+  static MethodIndex build(RestDescription restDescription) {
+    MethodIndex index = new MethodIndex();
+    index.basePath = restDescription.getBasePath();
+    putParameterTypes(index.parameterTypes, restDescription.getParameters());
+    index.addMethods("", restDescription.getMethods());
+    index.addResources("", restDescription.getResources());
+    return index;
+  }
+
+  private void addMethods(String resourceName, Map<String, RestMethod> methodMap) {
+    if (methodMap == null) {
+      return;
+    }
+    for (Map.Entry<String, RestMethod> entry : methodMap.entrySet()) {
+      RestMethod restMethod = entry.getValue();
+      Method method = new Method();
+      method.name = qualify(resourceName, entry.getKey());
+      method.id = restMethod.getId();
+      method.httpMethod = restMethod.getHttpMethod();
+      method.hasContent = !method.httpMethod.equals("GET") && !method.httpMethod.equals("DELETE");
+      method.path = restMethod.getPath();
+      if (restMethod.getScopes() != null) {
+        for (Object scope : restMethod.getScopes()) {
+          method.scopes.add((String) scope);
+        }
+      }
+      if (restMethod.getParameterOrder() != null) {
+        for (String parameterName : restMethod.getParameterOrder()) {
+          JsonSchema parameter = restMethod.getParameters().get(parameterName);
+          if (Boolean.TRUE.equals(parameter.getRequired())) {
+            method.requiredParameters.add(parameterName);
+          }
+        }
+      }
+      if (restMethod.getParameters() != null) {
+        for (Map.Entry<String, JsonSchema> parameter : restMethod.getParameters().entrySet()) {
+          if (!Boolean.TRUE.equals(parameter.getValue().getRequired())) {
+            method.optionalParameters.add(parameter.getKey());
+          }
+        }
+        Collections.sort(method.optionalParameters);
+      }
+      putParameterTypes(method.parameterTypes, restMethod.getParameters());
+      methods.put(method.name, method);
+      if (method.id != null) {
+        methodsById.put(method.id, method);
+      }
+    }
+  }
+
+  private void addResources(String resourceName, Map<String, RestResource> resourceMap) {
+    if (resourceMap == null) {
+      return;
+    }
+    for (Map.Entry<String, RestResource> entry : resourceMap.entrySet()) {
+      RestResource resource = entry.getValue();
+      String curResourceName = qualify(resourceName, entry.getKey());
+      addMethods(curResourceName, resource.getMethods());
+      addResources(curResourceName, resource.getResources());
+    }
+  }
+
+  private static void putParameterTypes(
+      Map<String, String> parameterTypes, Map<String, JsonSchema> parameters) {
+    if (parameters != null) {
+      for (Map.Entry<String, JsonSchema> entry : parameters.entrySet()) {
+        parameterTypes.put(entry.getKey(), entry.getValue().getType());
+      }
+    }
+  }
+
+  private static String qualify(String resourceName, String name) {
+    return resourceName.isEmpty() ? name : resourceName + "." + name;
+  }
+}
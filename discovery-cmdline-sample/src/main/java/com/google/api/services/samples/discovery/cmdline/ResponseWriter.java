@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2010 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.discovery.cmdline;
+
+import com.google.api.client.http.HttpMediaType;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.ByteStreams;
+import com.google.api.client.util.Charsets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes response content for {@code google call} while it is being received.
+ *
+ * <p>
+ * The content is never held in memory as a whole: it is either copied through a fixed buffer, or
+ * parsed and written again one JSON token at a time, which is how it is pretty-printed and how the
+ * items of a list response are written as one JSON object per line.
+ * </p>
+ */
+class ResponseWriter {
+
+  private final JsonFactory jsonFactory;
+
+  private final OutputStream out;
+
+  private final boolean pretty;
+
+  /** Name of the array field written by {@link #writeItems}, once it was seen. */
+  private String itemsField;
+
+  /**
+   * @param jsonFactory JSON factory
+   * @param out output stream, which is flushed but never closed
+   * @param pretty whether to pretty-print JSON content written by {@link #write}
+   */
+  ResponseWriter(JsonFactory jsonFactory, OutputStream out, boolean pretty) {
+    this.jsonFactory = jsonFactory;
+    this.out = out;
+    this.pretty = pretty;
+  }
+
+  /** Writes the content of the given response as it is, or pretty-printed if it is JSON. */
+  void write(HttpResponse response) throws IOException {
+    InputStream content = response.getContent();
+    if (content == null) {
+      return;
+    }
+    if (pretty && isJson(response)) {
+      JsonParser parser = jsonFactory.createJsonParser(content, response.getContentCharset());
+      try {
+        if (parser.nextToken() != null) {
+          JsonGenerator generator = jsonFactory.createJsonGenerator(out, Charsets.UTF_8);
+          generator.enablePrettyPrint();
+          copyValue(parser, generator);
+          generator.flush();
+        }
+      } finally {
+        parser.close();
+      }
+    } else {
+      ByteStreams.copy(content, out);
+    }
+    out.flush();
+  }
+
+  /**
+   * Writes each element of the top-level array field of the given list response on its own line,
+   * as soon as it is parsed, and skips everything else. Most list responses call that field
+   * {@code "items"}, but some name it after the listed resources, such as {@code "files"}; either
+   * way all pages must have the same single array field, although the last page may omit it.
+   *
+   * @return value of the {@code "nextPageToken"} of the response or {@code null} for the last page
+   * @throws IOException if the response has more than one array field, or a page before the last
+   *     one has none
+   */
+  String writeItems(HttpResponse response) throws IOException {
+    InputStream content = response.getContent();
+    if (content == null) {
+      return null;
+    }
+    String nextPageToken = null;
+    boolean sawItems = false;
+    JsonParser parser = jsonFactory.createJsonParser(content, response.getContentCharset());
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("list response expected to be a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getText();
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+          if (itemsField != null && !itemsField.equals(name)) {
+            throw new IOException(
+                "list response has more than one array field: " + itemsField + ", " + name);
+          }
+          itemsField = name;
+          sawItems = true;
+          while (parser.nextToken() != JsonToken.END_ARRAY) {
+            JsonGenerator generator = jsonFactory.createJsonGenerator(out, Charsets.UTF_8);
+            copyValue(parser, generator);
+            generator.flush();
+            out.write('\n');
+          }
+        } else if (name.equals("nextPageToken") && token == JsonToken.VALUE_STRING) {
+          nextPageToken = parser.getText();
+        } else {
+          parser.skipChildren();
+        }
+      }
+    } finally {
+      parser.close();
+    }
+    out.flush();
+    if (!sawItems && nextPageToken != null) {
+      throw new IOException("list response has no array field of items to write");
+    }
+    return nextPageToken;
+  }
+
+  private static boolean isJson(HttpResponse response) {
+    HttpMediaType mediaType = response.getMediaType();
+    return mediaType != null && "json".equals(mediaType.getSubType());
+  }
+
+  /**
+   * Copies the JSON value starting at the current token of the parser, leaving the parser on the
+   * last token of the value.
+   */
+  private static void copyValue(JsonParser parser, JsonGenerator generator) throws IOException {
+    int depth = 0;
+    while (true) {
+      JsonToken token = parser.getCurrentToken();
+      if (token == null) {
+        throw new IOException("unexpected end of JSON content");
+      }
+      switch (token) {
+        case START_OBJECT:
+          generator.writeStartObject();
+          depth++;
+          break;
+        case END_OBJECT:
+          generator.writeEndObject();
+          depth--;
+          break;
+        case START_ARRAY:
+          generator.writeStartArray();
+          depth++;
+          break;
+        case END_ARRAY:
+          generator.writeEndArray();
+          depth--;
+          break;
+        case FIELD_NAME:
+          generator.writeFieldName(parser.getText());
+          break;
+        case VALUE_STRING:
+          generator.writeString(parser.getText());
+          break;
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT:
+          // keep the number exactly as it was received
+          generator.writeNumber(parser.getText());
+          break;
+        case VALUE_TRUE:
+          generator.writeBoolean(true);
+          break;
+        case VALUE_FALSE:
+          generator.writeBoolean(false);
+          break;
+        case VALUE_NULL:
+          generator.writeNull();
+          break;
+        default:
+          throw new IOException("unexpected JSON token: " + token);
+      }
+      if (depth == 0) {
+        return;
+      }
+      parser.nextToken();
+    }
+  }
+}
@@ -46,7 +46,18 @@ class AsyncLoadTasks extends CommonAsyncTask {
     activity.tasksList = result;
   }
 
+  @Override
+  int getConcurrencyLimit() {
+    return 1;
+  }
+
+  /** Loads of the same activity have the same effect, so one in flight is enough. */
+  @Override
+  String getDeduplicationKey() {
+    return "load";
+  }
+
   static void run(TasksSample tasksSample) {
-    new AsyncLoadTasks(tasksSample).execute();
+    tasksSample.taskExecutor.execute(new AsyncLoadTasks(tasksSample));
   }
 }
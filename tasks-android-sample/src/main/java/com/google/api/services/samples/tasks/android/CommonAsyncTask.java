@@ -59,6 +59,10 @@ abstract class CommonAsyncTask extends AsyncTask<Void, Void, Boolean> {
       activity.startActivityForResult(
           userRecoverableException.getIntent(), TasksSample.REQUEST_AUTHORIZATION);
     } catch (IOException e) {
+      if (isCancelled()) {
+        // interrupted because the activity was destroyed
+        return false;
+      }
       Utils.logAndShow(activity, TasksSample.TAG, e);
     }
     return false;
@@ -67,13 +71,40 @@ abstract class CommonAsyncTask extends AsyncTask<Void, Void, Boolean> {
   @Override
   protected final void onPostExecute(Boolean success) {
     super.onPostExecute(success);
-    if (0 == --activity.numAsyncTasks) {
-      progressBar.setVisibility(View.GONE);
-    }
+    finished();
     if (success) {
       activity.refreshView();
     }
   }
 
+  @Override
+  protected final void onCancelled(Boolean success) {
+    super.onCancelled(success);
+    finished();
+  }
+
+  private void finished() {
+    activity.taskExecutor.finished(this);
+    if (0 == --activity.numAsyncTasks) {
+      progressBar.setVisibility(View.GONE);
+    }
+  }
+
+  /**
+   * Returns the maximum number of tasks of this class that {@link AsyncTaskExecutor} runs at the
+   * same time.
+   */
+  int getConcurrencyLimit() {
+    return 2;
+  }
+
+  /**
+   * Returns a key shared by tasks that have the same effect, so that only one of them needs to be
+   * in flight, or {@code null} for a task that must always be executed.
+   */
+  String getDeduplicationKey() {
+    return null;
+  }
+
   abstract protected void doInBackground() throws IOException;
 }
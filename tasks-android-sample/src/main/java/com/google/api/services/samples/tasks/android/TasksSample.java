@@ -85,6 +85,8 @@ adb shell setprop log.tag.HttpTransport DEBUG
 
   int numAsyncTasks;
 
+  final AsyncTaskExecutor taskExecutor = new AsyncTaskExecutor();
+
   private ListView listView;
 
   @Override
@@ -122,6 +124,12 @@ adb shell setprop log.tag.HttpTransport DEBUG
     listView.setAdapter(adapter);
   }
 
+  @Override
+  protected void onDestroy() {
+    taskExecutor.cancelAll();
+    super.onDestroy();
+  }
+
   @Override
   protected void onResume() {
     super.onResume();